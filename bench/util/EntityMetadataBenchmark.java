@@ -0,0 +1,275 @@
+package util;
+
+import model.OrderItem;
+
+import java.lang.reflect.Field;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Times saving OrderItems through {@link EntityMetadata} against the reflection
+ * path DataUtil.insert and update used before it: getDeclaredFields,
+ * setAccessible and camelToSnake for every row.
+ *
+ * The statement-building part runs without a database. When the database can
+ * be opened, the whole DataUtil.insert / update path is timed as well, inside a
+ * transaction that is rolled back, so no rows are left behind. The orders and
+ * products the items point to are inserted first in the same transaction, as
+ * foreign keys are enforced.
+ *
+ * Run from the project directory with the compiled classes and lib/ on the
+ * class path: java -cp "out:lib/*" util.EntityMetadataBenchmark [rows]
+ */
+public class EntityMetadataBenchmark {
+    private static final int WARMUP_ROUNDS = 3;
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args) throws Exception {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        List<OrderItem> items = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            items.add(new OrderItem(i + 1, 1 + i % 500, 1 + i % 97, 1 + i % 7, 9.99 + i % 13));
+        }
+
+        System.out.println("Building INSERT and UPDATE statements for " + rows + " OrderItems");
+        time("reflection insert", () -> {
+            long sink = 0;
+            for (OrderItem item : items) {
+                sink += reflectionInsert("OrderItem", item, "id").values.size();
+            }
+            return sink;
+        });
+        time("metadata insert", () -> {
+            long sink = 0;
+            for (OrderItem item : items) {
+                sink += metadataInsert("OrderItem", item, "id").values.size();
+            }
+            return sink;
+        });
+        time("reflection update", () -> {
+            long sink = 0;
+            for (OrderItem item : items) {
+                sink += reflectionUpdate("OrderItem", item, "id").values.size();
+            }
+            return sink;
+        });
+        time("metadata update", () -> {
+            long sink = 0;
+            for (OrderItem item : items) {
+                sink += metadataUpdate("OrderItem", item, "id").values.size();
+            }
+            return sink;
+        });
+
+        // Both paths must produce the same statements
+        OrderItem sample = items.get(0);
+        check(reflectionInsert("OrderItem", sample, "id"), metadataInsert("OrderItem", sample, "id"));
+        check(reflectionUpdate("OrderItem", sample, "id"), metadataUpdate("OrderItem", sample, "id"));
+
+        if (DBConnection.getConnection() == null) {
+            System.out.println("No database connection, skipping the DataUtil timings");
+            return;
+        }
+        int dbRows = Math.min(rows, 20_000);
+        List<OrderItem> dbItems = items.subList(0, dbRows);
+        System.out.println("Inserting and updating " + dbRows + " OrderItems (rolled back)");
+        timeRolledBack("reflection insert + update", dbItems, (conn, linked) -> {
+            for (OrderItem item : linked) {
+                item.setId(execute(conn, reflectionInsert("OrderItem", item, "id")));
+                execute(conn, reflectionUpdate("OrderItem", item, "id"));
+            }
+        });
+        timeRolledBack("DataUtil insert + update", dbItems, (conn, linked) -> {
+            for (OrderItem item : linked) {
+                item.setId(DataUtil.insert("OrderItem", item, "id"));
+                DataUtil.update("OrderItem", item, "id");
+            }
+        });
+    }
+
+    /**
+     * SQL text and parameters of one statement
+     */
+    private static class Built {
+        final String sql;
+        final List<Object> values;
+
+        Built(String sql, List<Object> values) {
+            this.sql = sql;
+            this.values = values;
+        }
+    }
+
+    private interface Work {
+        long run() throws Exception;
+    }
+
+    private interface ItemWork {
+        void run(Connection conn, List<OrderItem> items) throws Exception;
+    }
+
+    // As DataUtil.insert built its statement before EntityMetadata
+    private static Built reflectionInsert(String tableName, Object object, String... excludeFields)
+            throws IllegalAccessException {
+        Set<String> excluded = new HashSet<>(Arrays.asList(excludeFields));
+        StringBuilder columns = new StringBuilder();
+        StringBuilder placeholders = new StringBuilder();
+        List<Object> values = new ArrayList<>();
+
+        for (Field field : object.getClass().getDeclaredFields()) {
+            field.setAccessible(true);
+            String fieldName = field.getName();
+            if (!excluded.contains(fieldName) && field.get(object) != null) {
+                if (columns.length() > 0) {
+                    columns.append(", ");
+                    placeholders.append(", ");
+                }
+                columns.append(EntityMetadata.camelToSnake(fieldName));
+                placeholders.append("?");
+                values.add(field.get(object));
+            }
+        }
+        return new Built("INSERT INTO " + tableName + " (" + columns + ") VALUES (" + placeholders + ")", values);
+    }
+
+    // As DataUtil.update built its statement before EntityMetadata
+    private static Built reflectionUpdate(String tableName, Object object, String idFieldName,
+            String... excludeFields) throws ReflectiveOperationException {
+        Set<String> excluded = new HashSet<>(Arrays.asList(excludeFields));
+        excluded.add(idFieldName);
+
+        Field idField = object.getClass().getDeclaredField(idFieldName);
+        idField.setAccessible(true);
+        Object idValue = idField.get(object);
+
+        StringBuilder setClause = new StringBuilder();
+        List<Object> values = new ArrayList<>();
+        for (Field field : object.getClass().getDeclaredFields()) {
+            field.setAccessible(true);
+            String fieldName = field.getName();
+            if (!excluded.contains(fieldName) && field.get(object) != null) {
+                if (setClause.length() > 0) {
+                    setClause.append(", ");
+                }
+                setClause.append(EntityMetadata.camelToSnake(fieldName)).append(" = ?");
+                values.add(field.get(object));
+            }
+        }
+        values.add(idValue);
+        return new Built("UPDATE " + tableName + " SET " + setClause + " WHERE "
+                + EntityMetadata.camelToSnake(idFieldName) + " = ?", values);
+    }
+
+    private static Built metadataInsert(String tableName, Object object, String... excludeFields) {
+        EntityMetadata.Binding binding = EntityMetadata.forClass(object.getClass())
+                .insertBinding(tableName, excludeFields);
+        Object[] fieldValues = binding.values(object);
+        return new Built(binding.sql(binding.presentMask(fieldValues)), binding.parameters(object, fieldValues));
+    }
+
+    private static Built metadataUpdate(String tableName, Object object, String idFieldName,
+            String... excludeFields) {
+        EntityMetadata.Binding binding = EntityMetadata.forClass(object.getClass())
+                .updateBinding(tableName, idFieldName, excludeFields);
+        Object[] fieldValues = binding.values(object);
+        return new Built(binding.sql(binding.presentMask(fieldValues)), binding.parameters(object, fieldValues));
+    }
+
+    // Returns the generated key of an insert, 0 otherwise
+    private static int execute(Connection conn, Built built) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(built.sql, Statement.RETURN_GENERATED_KEYS)) {
+            for (int i = 0; i < built.values.size(); i++) {
+                stmt.setObject(i + 1, built.values.get(i));
+            }
+            stmt.executeUpdate();
+            try (ResultSet keys = stmt.getGeneratedKeys()) {
+                return keys.next() ? keys.getInt(1) : 0;
+            }
+        }
+    }
+
+    /**
+     * Insert the orders and products the items refer to and return copies of
+     * the items pointing at them. Item order and product IDs count from 1.
+     */
+    private static List<OrderItem> withParents(Connection conn, List<OrderItem> items) throws SQLException {
+        int orders = 0;
+        int products = 0;
+        for (OrderItem item : items) {
+            orders = Math.max(orders, item.getOrderId());
+            products = Math.max(products, item.getProductId());
+        }
+
+        int[] orderIds = new int[orders];
+        for (int i = 0; i < orders; i++) {
+            orderIds[i] = execute(conn, new Built("INSERT INTO \"Order\" (order_date, total_amount, status) "
+                    + "VALUES (?, 0, 'New')", Arrays.asList((Object) "2000-01-01")));
+        }
+        String run = Long.toString(System.nanoTime(), 36);
+        int[] productIds = new int[products];
+        for (int i = 0; i < products; i++) {
+            productIds[i] = execute(conn, new Built("INSERT INTO Product (sku, name) VALUES (?, ?)",
+                    Arrays.asList((Object) ("bench-" + run + "-" + i), "Benchmark product " + i)));
+        }
+
+        List<OrderItem> linked = new ArrayList<>(items.size());
+        for (OrderItem item : items) {
+            linked.add(new OrderItem(0, orderIds[item.getOrderId() - 1], productIds[item.getProductId() - 1],
+                    item.getQuantity(), item.getUnitPrice()));
+        }
+        return linked;
+    }
+
+    private static void check(Built expected, Built actual) {
+        if (!expected.sql.equals(actual.sql) || !expected.values.equals(actual.values)) {
+            throw new IllegalStateException("Statements differ:\n" + expected.sql + " " + expected.values
+                    + "\n" + actual.sql + " " + actual.values);
+        }
+    }
+
+    private static void time(String label, Work work) throws Exception {
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            work.run();
+        }
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < ROUNDS; i++) {
+            long start = System.nanoTime();
+            work.run();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        System.out.printf("  %-28s %8.1f ms%n", label, best / 1e6);
+    }
+
+    // Times the work only, not the parent rows inserted before it
+    private static void timeRolledBack(String label, List<OrderItem> items, ItemWork work) {
+        long[] elapsed = new long[1];
+        try {
+            DataUtil.inTransaction(conn -> {
+                List<OrderItem> linked = withParents(conn, items);
+                long start = System.nanoTime();
+                try {
+                    work.run(conn, linked);
+                } catch (Exception e) {
+                    throw new SQLException(e);
+                }
+                elapsed[0] = System.nanoTime() - start;
+                // Throwing rolls the transaction back
+                throw new SQLException("rollback");
+            });
+        } catch (SQLException e) {
+            if (!"rollback".equals(e.getMessage())) {
+                System.err.println("Error timing " + label + ": " + e.getMessage());
+                return;
+            }
+        }
+        System.out.printf("  %-28s %8.1f ms%n", label, elapsed[0] / 1e6);
+    }
+}
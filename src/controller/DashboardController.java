@@ -1,23 +1,45 @@
 package controller;
 
+import model.DashboardMetrics;
 import model.Product;
 import org.jfree.chart.ChartFactory;
+import org.jfree.chart.ChartUtilities;
 import org.jfree.chart.JFreeChart;
+import org.jfree.chart.axis.NumberAxis;
+import org.jfree.chart.labels.StandardXYZToolTipGenerator;
 import org.jfree.chart.plot.PlotOrientation;
+import org.jfree.chart.plot.XYPlot;
+import org.jfree.chart.renderer.LookupPaintScale;
+import org.jfree.chart.renderer.xy.XYBlockRenderer;
+import org.jfree.chart.title.PaintScaleLegend;
+import org.jfree.chart.title.TextTitle;
 import org.jfree.data.category.DefaultCategoryDataset;
 import org.jfree.data.general.DefaultPieDataset;
 import org.jfree.data.time.Day;
 import org.jfree.data.time.TimeSeries;
 import org.jfree.data.time.TimeSeriesCollection;
+import org.jfree.ui.RectangleAnchor;
+import org.jfree.ui.RectangleEdge;
+import util.AppConfig;
 import util.DataUtil;
+import util.DayNumber;
+import util.Downsampler;
+import util.StockLedger;
+import util.StreamingStats;
+import util.TimeBuckets;
 import util.DataUtil.ResultSetMapper;
-import org.jfree.data.statistics.HistogramDataset;
+import org.jfree.data.statistics.SimpleHistogramBin;
+import org.jfree.data.statistics.SimpleHistogramDataset;
+import org.jfree.data.xy.DefaultXYZDataset;
 import org.jfree.data.xy.XYSeries;
 import org.jfree.data.xy.XYSeriesCollection;
+import java.awt.Color;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.text.SimpleDateFormat;
-import java.util.Calendar;
+import java.text.DecimalFormat;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
@@ -25,42 +47,71 @@ import java.util.Map;
 
 public class DashboardController {
     
-    private static final SimpleDateFormat DATE_FORMAT = new SimpleDateFormat("yyyy-MM-dd");
-    
     /**
-     * Get stock metrics for dashboard
+     * Compute all dashboard KPIs: one aggregate pass over Product, one over
+     * "Order" and one over OrderItem, using conditional aggregation for the
+     * filtered counts and sums
      */
-    public Map<String, Object> getStockMetrics() {
-        Map<String, Object> metrics = new HashMap<>();
-        
-        // Total products
-        String productCountSql = "SELECT COUNT(*) FROM Product";
-        metrics.put("totalProducts", DataUtil.queryScalar(productCountSql));
-        
-        // Low stock products count
-        String lowStockSql = "SELECT COUNT(*) FROM Product WHERE stock_qty <= reorder_level";
-        metrics.put("lowStockCount", DataUtil.queryScalar(lowStockSql));
-        
-        // Total inventory value
-        String inventoryValueSql = "SELECT SUM(stock_qty * unit_price) FROM Product";
-        metrics.put("inventoryValue", DataUtil.queryScalar(inventoryValueSql));
-        
-        // Orders metrics
-        String totalOrdersSql = "SELECT COUNT(*) FROM \"Order\"";
-        metrics.put("totalOrders", DataUtil.queryScalar(totalOrdersSql));
-        
-        String pendingOrdersSql = "SELECT COUNT(*) FROM \"Order\" WHERE status IN ('New', 'Processing')";
-        metrics.put("pendingOrders", DataUtil.queryScalar(pendingOrdersSql));
-        
-        String todayOrdersSql = "SELECT COUNT(*) FROM \"Order\" WHERE date(order_date) = date('now')";
-        metrics.put("todayOrders", DataUtil.queryScalar(todayOrdersSql));
+    public DashboardMetrics getDashboardMetrics() {
+        DashboardMetrics metrics = new DashboardMetrics();
+        
+        String productSql = "SELECT COUNT(*), " +
+                            "SUM(CASE WHEN stock_qty <= reorder_level THEN 1 ELSE 0 END), " +
+                            "SUM(CASE WHEN stock_qty = 0 THEN 1 ELSE 0 END), " +
+                            "TOTAL(stock_qty * unit_price), " +
+                            "MIN(unit_price), MAX(unit_price), AVG(unit_price), " +
+                            "MIN(stock_qty), MAX(stock_qty), AVG(stock_qty), SUM(stock_qty) " +
+                            "FROM Product";
+        DataUtil.forEach(productSql, rs -> {
+            metrics.setTotalProducts(rs.getInt(1));
+            metrics.setLowStockCount(rs.getInt(2));
+            metrics.setZeroStockCount(rs.getInt(3));
+            metrics.setInventoryValue(rs.getDouble(4));
+            metrics.setMinPrice(rs.getDouble(5));
+            metrics.setMaxPrice(rs.getDouble(6));
+            metrics.setAvgPrice(rs.getDouble(7));
+            metrics.setMinStock(rs.getInt(8));
+            metrics.setMaxStock(rs.getInt(9));
+            metrics.setAvgStock(rs.getDouble(10));
+            metrics.setTotalStock(rs.getLong(11));
+        });
         
-        String todaySalesSql = "SELECT SUM(total_amount) FROM \"Order\" WHERE date(order_date) = date('now')";
-        metrics.put("todaySales", DataUtil.queryScalar(todaySalesSql));
+        // Median price from one streaming pass, without sorting the table
+        if (metrics.getTotalProducts() > 0) {
+            metrics.setMedianPrice(streamStats("SELECT unit_price FROM Product").quantile(0.5));
+        }
         
-        // Recent sales
-        String recentSalesSql = "SELECT SUM(total_amount) FROM \"Order\" WHERE order_date >= date('now', '-30 days')";
-        metrics.put("recentSales", DataUtil.queryScalar(recentSalesSql));
+        long today = DayNumber.today();
+        String orderSql = "SELECT COUNT(*), " +
+                          "SUM(CASE WHEN status IN ('New', 'Processing') THEN 1 ELSE 0 END), " +
+                          "TOTAL(total_amount), AVG(total_amount), MAX(total_amount), " +
+                          "SUM(CASE WHEN order_day = ? THEN 1 ELSE 0 END), " +
+                          "TOTAL(CASE WHEN order_day = ? THEN total_amount END), " +
+                          "SUM(CASE WHEN order_day >= ? THEN 1 ELSE 0 END), " +
+                          "TOTAL(CASE WHEN order_day >= ? THEN total_amount END), " +
+                          "SUM(CASE WHEN order_day >= ? THEN 1 ELSE 0 END), " +
+                          "TOTAL(CASE WHEN order_day >= ? THEN total_amount END) " +
+                          "FROM \"Order\"";
+        long weekStart = DayNumber.daysAgo(7);
+        long monthStart = DayNumber.daysAgo(30);
+        DataUtil.forEach(orderSql, rs -> {
+            metrics.setTotalOrders(rs.getInt(1));
+            metrics.setPendingOrders(rs.getInt(2));
+            metrics.setTotalRevenue(rs.getDouble(3));
+            metrics.setAvgOrderValue(rs.getDouble(4));
+            metrics.setMaxOrderValue(rs.getDouble(5));
+            metrics.setTodayOrders(rs.getInt(6));
+            metrics.setTodaySales(rs.getDouble(7));
+            metrics.setWeekOrders(rs.getInt(8));
+            metrics.setWeekSales(rs.getDouble(9));
+            metrics.setMonthOrders(rs.getInt(10));
+            metrics.setMonthSales(rs.getDouble(11));
+        }, today, today, weekStart, weekStart, monthStart, monthStart);
+        
+        // Average over orders that have items, answered from the order_id index
+        String itemsSql = "SELECT CAST(COUNT(*) AS REAL) / COUNT(DISTINCT order_id) FROM OrderItem";
+        Object avgItems = DataUtil.queryScalar(itemsSql);
+        metrics.setAvgItemsPerOrder(avgItems == null ? 0.0 : ((Number) avgItems).doubleValue());
         
         return metrics;
     }
@@ -102,38 +153,38 @@ public class DashboardController {
      * Create a sales over time line chart
      */
     public JFreeChart createSalesChart(int days) {
-        DefaultCategoryDataset dataset = new DefaultCategoryDataset();
+        return createSalesChart(days, TimeBuckets.Granularity.DAY);
+    }
+    
+    /**
+     * Create a sales over time line chart with one point per day, week or month
+     */
+    public JFreeChart createSalesChart(int days, TimeBuckets.Granularity granularity) {
+        return createSalesChart(days, granularity, Downsampler.DEFAULT_MAX_POINTS);
+    }
+    
+    /**
+     * Create a sales over time line chart with one point per day, week or month,
+     * downsampled to at most the given number of points
+     * @param maxPoints Points worth drawing, see {@link Downsampler#maxPointsForWidth(int)}
+     */
+    public JFreeChart createSalesChart(int days, TimeBuckets.Granularity granularity, int maxPoints) {
+        TimeSeriesCollection dataset = new TimeSeriesCollection();
+        TimeSeries series = new TimeSeries("Sales");
         
-        // Get sales data for the last 'days' days
-        Calendar cal = Calendar.getInstance();
-        cal.set(Calendar.HOUR_OF_DAY, 0);
-        cal.set(Calendar.MINUTE, 0);
-        cal.set(Calendar.SECOND, 0);
-        cal.set(Calendar.MILLISECOND, 0);
-        
-        // Go back 'days' days
-        cal.add(Calendar.DAY_OF_MONTH, -days);
-        
-        // For each day, add a data point
-        for (int i = 0; i <= days; i++) {
-            Date date = cal.getTime();
-            String dateStr = DATE_FORMAT.format(date);
-            
-            String sql = "SELECT SUM(total_amount) FROM \"Order\" WHERE date(order_date) = date(?)";
-            Object result = DataUtil.queryScalar(sql, dateStr);
-            double sales = (result == null) ? 0.0 : ((Number) result).doubleValue();
-            
-            dataset.addValue(sales, "Sales", dateStr);
-            
-            cal.add(Calendar.DAY_OF_MONTH, 1);
+        // One grouped query over the daily sales rollup; days without orders are filled with 0
+        Map<LocalDate, Double> sales = TimeBuckets.sumLastDays("SalesDaily", "day", "revenue", granularity, days);
+        for (Map.Entry<LocalDate, Double> bucket : Downsampler.lttb(sales, maxPoints).entrySet()) {
+            series.add(new Day(DayNumber.toDate(DayNumber.of(bucket.getKey()))), bucket.getValue());
         }
         
-        return ChartFactory.createLineChart(
+        dataset.addSeries(series);
+        
+        return ChartFactory.createTimeSeriesChart(
                 "Sales Over Time",
                 "Date",
                 "Amount",
                 dataset,
-                PlotOrientation.VERTICAL,
                 true,
                 true,
                 false
@@ -185,10 +236,11 @@ public class DashboardController {
     public JFreeChart createTopProductsChart() {
         DefaultPieDataset dataset = new DefaultPieDataset();
         
-        String sql = "SELECT p.name, SUM(oi.quantity) as total_qty " +
-                     "FROM OrderItem oi " +
-                     "JOIN Product p ON oi.product_id = p.id " +
+        String sql = "SELECT p.name, SUM(ps.quantity) as total_qty " +
+                     "FROM ProductSales ps " +
+                     "JOIN Product p ON ps.product_id = p.id " +
                      "GROUP BY p.name " +
+                     "HAVING total_qty > 0 " +
                      "ORDER BY total_qty DESC " +
                      "LIMIT 5";
         
@@ -219,40 +271,25 @@ public class DashboardController {
      * Create an inventory trend chart showing stock level changes over time
      */
     public JFreeChart createInventoryTrendChart(int days) {
+        return createInventoryTrendChart(days, Downsampler.DEFAULT_MAX_POINTS);
+    }
+    
+    /**
+     * Create an inventory trend chart, downsampled to at most the given number of points
+     * @param maxPoints Points worth drawing, see {@link Downsampler#maxPointsForWidth(int)}
+     */
+    public JFreeChart createInventoryTrendChart(int days, int maxPoints) {
         TimeSeriesCollection dataset = new TimeSeriesCollection();
         TimeSeries series = new TimeSeries("Inventory Level");
         
-        // Get inventory adjustment history for the past 'days' days
-        Calendar cal = Calendar.getInstance();
-        cal.set(Calendar.HOUR_OF_DAY, 0);
-        cal.set(Calendar.MINUTE, 0);
-        cal.set(Calendar.SECOND, 0);
-        cal.set(Calendar.MILLISECOND, 0);
-        
-        // Go back 'days' days
-        cal.add(Calendar.DAY_OF_MONTH, -days);
-        
-        // Get current total stock level
-        String currentStockSql = "SELECT SUM(stock_qty) FROM Product";
-        Object currentStock = DataUtil.queryScalar(currentStockSql);
-        double totalStock = (currentStock == null) ? 0.0 : ((Number) currentStock).doubleValue();
-        
-        // For each day, add a data point based on inventory adjustments
-        for (int i = 0; i <= days; i++) {
-            Date date = cal.getTime();
-            
-            // Get sum of adjustments for this day
-            String sql = "SELECT SUM(change_qty) FROM InventoryAdjustment WHERE date(date) = date(?)";
-            Object result = DataUtil.queryScalar(sql, DATE_FORMAT.format(date));
-            double change = (result == null) ? 0.0 : ((Number) result).doubleValue();
-            
-            // Add to series
-            series.add(new Day(date), totalStock);
-            
-            // Adjust totalStock for next day's calculation
-            totalStock -= change;
-            
-            cal.add(Calendar.DAY_OF_MONTH, 1);
+        // End-of-day totals from the stock ledger: one checkpoint lookup for the
+        // start of the range plus the daily movement sums, sales included
+        LocalDate today = LocalDate.now();
+        Map<LocalDate, Double> totals = StockLedger.dailyTotals(today.minusDays(days), today);
+        
+        for (Map.Entry<LocalDate, Double> day : Downsampler.lttb(totals, maxPoints).entrySet()) {
+            Date date = DayNumber.toDate(DayNumber.of(day.getKey()));
+            series.add(new Day(date), day.getValue());
         }
         
         dataset.addSeries(series);
@@ -305,11 +342,13 @@ public class DashboardController {
     public JFreeChart createSalesBySupplierChart() {
         DefaultCategoryDataset dataset = new DefaultCategoryDataset();
         
-        String sql = "SELECT s.name as supplier, SUM(oi.quantity * oi.unit_price) as total " +
-                    "FROM OrderItem oi " +
-                    "JOIN Product p ON oi.product_id = p.id " +
+        // Per-product totals, grouped by each product's current supplier
+        String sql = "SELECT s.name as supplier, SUM(ps.revenue) as total " +
+                    "FROM ProductSales ps " +
+                    "JOIN Product p ON ps.product_id = p.id " +
                     "JOIN Supplier s ON p.supplier_id = s.id " +
                     "GROUP BY s.name " +
+                    "HAVING total > 0 " +
                     "ORDER BY total DESC";
         
         List<Map<String, Object>> results = DataUtil.query(sql, rs -> {
@@ -339,78 +378,12 @@ public class DashboardController {
         );
     }
 
-    /**
-     * Get product price statistics
-     */
-    public Map<String, Object> getProductPriceStats() {
-        Map<String, Object> stats = new HashMap<>();
-        
-        String minPriceSql = "SELECT MIN(unit_price) FROM Product";
-        stats.put("minPrice", DataUtil.queryScalar(minPriceSql));
-        
-        String maxPriceSql = "SELECT MAX(unit_price) FROM Product";
-        stats.put("maxPrice", DataUtil.queryScalar(maxPriceSql));
-        
-        String avgPriceSql = "SELECT AVG(unit_price) FROM Product";
-        stats.put("avgPrice", DataUtil.queryScalar(avgPriceSql));
-        
-        // Median price calculation in SQLite is more complex
-        String medianPriceSql = "SELECT unit_price FROM Product ORDER BY unit_price LIMIT 1 OFFSET (SELECT COUNT(*) FROM Product) / 2";
-        stats.put("medianPrice", DataUtil.queryScalar(medianPriceSql));
-        
-        return stats;
-    }
-    
-    /**
-     * Get product stock statistics
-     */
-    public Map<String, Object> getProductStockStats() {
-        Map<String, Object> stats = new HashMap<>();
-        
-        String minStockSql = "SELECT MIN(stock_qty) FROM Product";
-        stats.put("minStock", DataUtil.queryScalar(minStockSql));
-        
-        String maxStockSql = "SELECT MAX(stock_qty) FROM Product";
-        stats.put("maxStock", DataUtil.queryScalar(maxStockSql));
-        
-        String avgStockSql = "SELECT AVG(stock_qty) FROM Product";
-        stats.put("avgStock", DataUtil.queryScalar(avgStockSql));
-        
-        String totalStockSql = "SELECT SUM(stock_qty) FROM Product";
-        stats.put("totalStock", DataUtil.queryScalar(totalStockSql));
-        
-        String zeroStockSql = "SELECT COUNT(*) FROM Product WHERE stock_qty = 0";
-        stats.put("zeroStock", DataUtil.queryScalar(zeroStockSql));
-        
-        return stats;
-    }
-    
     /**
      * Create a histogram chart of product prices
      */
     public JFreeChart createProductPriceHistogram() {
-        HistogramDataset dataset = new HistogramDataset();
-        
-        String sql = "SELECT unit_price FROM Product";
-        List<Double> prices = DataUtil.query(sql, rs -> rs.getDouble("unit_price"));
-        
-        double[] priceArray = new double[prices.size()];
-        for (int i = 0; i < prices.size(); i++) {
-            priceArray[i] = prices.get(i);
-        }
-        
-        dataset.addSeries("Unit Price", priceArray, 10);
-        
-        return ChartFactory.createHistogram(
-                "Product Price Distribution",
-                "Price Range",
-                "Frequency",
-                dataset,
-                PlotOrientation.VERTICAL,
-                true,
-                true,
-                false
-        );
+        StreamingStats prices = streamStats("SELECT unit_price FROM Product");
+        return createHistogramChart("Product Price Distribution", "Price Range", "Unit Price", prices);
     }
     
     /**
@@ -484,25 +457,22 @@ public class DashboardController {
     }
     
     /**
-     * Create a scatter plot of product price vs. stock quantity
+     * Create a chart of unit price against stock quantity: one point per
+     * product for small catalogs, a density grid above "dashboard.scatterMaxPoints"
+     * products (default 2000), see {@link #createPriceStockDensityChart(int)}
      */
     public JFreeChart createPriceVsStockChart() {
-        XYSeriesCollection dataset = new XYSeriesCollection();
-        XYSeries series = new XYSeries("Products");
-        
-        String sql = "SELECT name, unit_price, stock_qty FROM Product";
+        Object count = DataUtil.queryScalar("SELECT COUNT(*) FROM Product");
+        int products = count == null ? 0 : ((Number) count).intValue();
+        if (products > AppConfig.getInt("dashboard.scatterMaxPoints", 2000)) {
+            return createPriceStockDensityChart(products);
+        }
         
-        List<Product> products = DataUtil.query(sql, rs -> {
-            Product product = new Product();
-            product.setName(rs.getString("name"));
-            product.setUnitPrice(rs.getDouble("unit_price"));
-            product.setStockQty(rs.getInt("stock_qty"));
-            return product;
-        });
+        XYSeriesCollection dataset = new XYSeriesCollection();
+        XYSeries series = new XYSeries("Products", false, true);
         
-        for (Product product : products) {
-            series.add(product.getUnitPrice(), product.getStockQty());
-        }
+        String sql = "SELECT unit_price, stock_qty FROM Product";
+        DataUtil.forEach(sql, rs -> series.add(rs.getDouble(1), rs.getInt(2), false));
         
         dataset.addSeries(series);
         
@@ -519,76 +489,158 @@ public class DashboardController {
     }
     
     /**
-     * Get order statistics for the Order Analysis tab
+     * Price against stock as a grid of cells shaded by product count, counted by
+     * one GROUP BY over Product. Click a cell and pass it to
+     * {@link #getProductsInBin(PriceStockBins, int, int)} to list its products.
      */
-    public Map<String, Object> getOrderStats() {
-        Map<String, Object> stats = new HashMap<>();
-        
-        String totalOrdersSql = "SELECT COUNT(*) FROM \"Order\"";
-        stats.put("totalOrders", DataUtil.queryScalar(totalOrdersSql));
-        
-        String avgOrderValueSql = "SELECT AVG(total_amount) FROM \"Order\"";
-        stats.put("avgOrderValue", DataUtil.queryScalar(avgOrderValueSql));
-        
-        String maxOrderValueSql = "SELECT MAX(total_amount) FROM \"Order\"";
-        stats.put("maxOrderValue", DataUtil.queryScalar(maxOrderValueSql));
-        
-        String totalRevenueSql = "SELECT SUM(total_amount) FROM \"Order\"";
-        stats.put("totalRevenue", DataUtil.queryScalar(totalRevenueSql));
-        
-        String avgItemsPerOrderSql = "SELECT AVG(item_count) FROM " +
-                                    "(SELECT order_id, COUNT(*) as item_count FROM OrderItem GROUP BY order_id)";
-        stats.put("avgItemsPerOrder", DataUtil.queryScalar(avgItemsPerOrderSql));
+    private JFreeChart createPriceStockDensityChart(int productCount) {
+        double[] bounds = new double[4];
+        DataUtil.forEach("SELECT MIN(unit_price), MAX(unit_price), MIN(stock_qty), MAX(stock_qty) FROM Product", rs -> {
+            for (int i = 0; i < bounds.length; i++) {
+                bounds[i] = rs.getDouble(i + 1);
+            }
+        });
+        PriceStockBins bins = new PriceStockBins(bounds[0], bounds[1], bounds[2], bounds[3]);
+        
+        String sql = "SELECT " + PriceStockBins.COLUMN_SQL + " AS cell_column, " + PriceStockBins.ROW_SQL + " AS cell_row, " +
+                     "COUNT(*) FROM Product GROUP BY cell_column, cell_row";
+        List<double[]> cells = new ArrayList<>();
+        DataUtil.forEach(sql, rs -> cells.add(new double[] {rs.getInt(1), rs.getInt(2), rs.getInt(3)}),
+                bins.sqlParameters());
+        bins.setCells(cells);
+        
+        NumberAxis priceAxis = new NumberAxis("Unit Price");
+        priceAxis.setRange(bins.minPrice, bins.minPrice + bins.priceStep * PriceStockBins.COLUMNS);
+        NumberAxis stockAxis = new NumberAxis("Stock Quantity");
+        stockAxis.setRange(bins.minStock, bins.minStock + bins.stockStep * bins.rows);
+        
+        // Shade from light to dark on a square-root scale so sparse cells stay visible
+        double maxCount = Math.max(1, bins.maxCount);
+        LookupPaintScale scale = new LookupPaintScale(0, maxCount + 1, Color.WHITE);
+        for (int i = 0; i <= 10; i++) {
+            double level = maxCount * (i / 10.0) * (i / 10.0);
+            float t = i / 10.0f;
+            scale.add(Math.max(1, level), new Color(1.0f - 0.8f * t, 1.0f - 0.6f * t, 1.0f - 0.2f * t));
+        }
         
-        return stats;
+        XYBlockRenderer renderer = new XYBlockRenderer();
+        renderer.setBlockWidth(bins.priceStep);
+        renderer.setBlockHeight(bins.stockStep);
+        renderer.setBlockAnchor(RectangleAnchor.CENTER);
+        renderer.setPaintScale(scale);
+        renderer.setBaseToolTipGenerator(new StandardXYZToolTipGenerator(
+                "{0}: price {1}, stock {2}, {3} products", new DecimalFormat("0.00"),
+                new DecimalFormat("0"), new DecimalFormat("0")));
+        
+        XYPlot plot = new XYPlot(bins, priceAxis, stockAxis, renderer);
+        JFreeChart chart = new JFreeChart("Price vs. Stock Quantity", JFreeChart.DEFAULT_TITLE_FONT, plot, false);
+        chart.addSubtitle(new TextTitle(productCount + " products, click a cell to list them"));
+        
+        NumberAxis legendAxis = new NumberAxis("Products");
+        legendAxis.setRange(0, maxCount + 1);
+        PaintScaleLegend legend = new PaintScaleLegend(scale, legendAxis);
+        legend.setPosition(RectangleEdge.RIGHT);
+        legend.setMargin(4, 4, 4, 4);
+        chart.addSubtitle(legend);
+        ChartUtilities.applyCurrentTheme(chart);
+        
+        return chart;
     }
     
     /**
-     * Get orders by date range
+     * Get the products of one cell of a price/stock density chart, read only
+     * when the cell is opened
+     * @param bins The dataset of the chart
+     * @param item The item index of the clicked cell
+     * @param limit Maximum number of products to return
      */
-    public Map<String, Object> getOrdersByDateRange() {
-        Map<String, Object> stats = new HashMap<>();
-        
-        String todayOrdersSql = "SELECT COUNT(*), SUM(total_amount) FROM \"Order\" WHERE date(order_date) = date('now')";
-        List<Map<String, Object>> todayResults = DataUtil.query(todayOrdersSql, rs -> {
-            Map<String, Object> result = new HashMap<>();
-            result.put("count", rs.getInt(1));
-            result.put("total", rs.getDouble(2));
-            return result;
-        });
-        
-        if (!todayResults.isEmpty()) {
-            stats.put("todayCount", todayResults.get(0).get("count"));
-            stats.put("todayTotal", todayResults.get(0).get("total"));
+    public List<Product> getProductsInBin(PriceStockBins bins, int item, int limit) {
+        String sql = "SELECT id, sku, name, unit_price, stock_qty FROM Product " +
+                     "WHERE " + PriceStockBins.COLUMN_SQL + " = ? AND " + PriceStockBins.ROW_SQL + " = ? " +
+                     "ORDER BY unit_price, stock_qty LIMIT ?";
+        
+        Object[] params = {
+            bins.minPrice, bins.priceStep, bins.getColumn(item),
+            bins.minStock, bins.stockStep, bins.rows - 1, bins.getRow(item),
+            limit
+        };
+        
+        return DataUtil.query(sql, rs -> {
+            Product product = new Product();
+            product.setId(rs.getInt("id"));
+            product.setSku(rs.getString("sku"));
+            product.setName(rs.getString("name"));
+            product.setUnitPrice(rs.getDouble("unit_price"));
+            product.setStockQty(rs.getInt("stock_qty"));
+            return product;
+        }, params);
+    }
+    
+    /**
+     * Product counts per cell of a price/stock grid, as the XYZ dataset of the
+     * density chart: x and y are the cell centers, z the count. The grid is 40
+     * columns wide; stock gets up to 30 rows of whole quantities.
+     */
+    public static class PriceStockBins extends DefaultXYZDataset {
+        static final int COLUMNS = 40;
+        static final int MAX_ROWS = 30;
+        
+        // Cell of a product; the last column and row include the maximum
+        static final String COLUMN_SQL = "MIN(CAST((unit_price - ?) / ? AS INTEGER), " + (COLUMNS - 1) + ")";
+        static final String ROW_SQL = "MIN(CAST((stock_qty - ?) / ? AS INTEGER), ?)";
+        
+        final double minPrice;
+        final double priceStep;
+        final double minStock;
+        final double stockStep;
+        final int rows;
+        int maxCount;
+        private int[] columnOf = new int[0];
+        private int[] rowOf = new int[0];
+        
+        PriceStockBins(double minPrice, double maxPrice, double minStock, double maxStock) {
+            this.minPrice = minPrice;
+            this.priceStep = maxPrice > minPrice ? (maxPrice - minPrice) / COLUMNS : 1.0;
+            this.minStock = minStock;
+            this.stockStep = Math.max(1.0, Math.ceil((maxStock - minStock + 1) / MAX_ROWS));
+            this.rows = (int) Math.ceil((maxStock - minStock + 1) / stockStep);
         }
         
-        String weekOrdersSql = "SELECT COUNT(*), SUM(total_amount) FROM \"Order\" WHERE order_date >= date('now', '-7 days')";
-        List<Map<String, Object>> weekResults = DataUtil.query(weekOrdersSql, rs -> {
-            Map<String, Object> result = new HashMap<>();
-            result.put("count", rs.getInt(1));
-            result.put("total", rs.getDouble(2));
-            return result;
-        });
+        // Parameters of COLUMN_SQL followed by those of ROW_SQL
+        Object[] sqlParameters() {
+            return new Object[] {minPrice, priceStep, minStock, stockStep, rows - 1};
+        }
         
-        if (!weekResults.isEmpty()) {
-            stats.put("weekCount", weekResults.get(0).get("count"));
-            stats.put("weekTotal", weekResults.get(0).get("total"));
+        void setCells(List<double[]> cells) {
+            double[][] series = new double[3][cells.size()];
+            columnOf = new int[cells.size()];
+            rowOf = new int[cells.size()];
+            for (int i = 0; i < cells.size(); i++) {
+                double[] cell = cells.get(i);
+                columnOf[i] = (int) cell[0];
+                rowOf[i] = (int) cell[1];
+                series[0][i] = minPrice + (columnOf[i] + 0.5) * priceStep;
+                series[1][i] = minStock + (rowOf[i] + 0.5) * stockStep;
+                series[2][i] = cell[2];
+                maxCount = Math.max(maxCount, (int) cell[2]);
+            }
+            addSeries("Products", series);
         }
         
-        String monthOrdersSql = "SELECT COUNT(*), SUM(total_amount) FROM \"Order\" WHERE order_date >= date('now', '-30 days')";
-        List<Map<String, Object>> monthResults = DataUtil.query(monthOrdersSql, rs -> {
-            Map<String, Object> result = new HashMap<>();
-            result.put("count", rs.getInt(1));
-            result.put("total", rs.getDouble(2));
-            return result;
-        });
+        public int getColumn(int item) {
+            return columnOf[item];
+        }
         
-        if (!monthResults.isEmpty()) {
-            stats.put("monthCount", monthResults.get(0).get("count"));
-            stats.put("monthTotal", monthResults.get(0).get("total"));
+        public int getRow(int item) {
+            return rowOf[item];
         }
         
-        return stats;
+        /**
+         * Number of products in a cell
+         */
+        public int getCount(int item) {
+            return (int) getZValue(0, item);
+        }
     }
     
     /**
@@ -597,10 +649,11 @@ public class DashboardController {
     public JFreeChart createOrdersByCustomer() {
         DefaultCategoryDataset dataset = new DefaultCategoryDataset();
         
-        String sql = "SELECT c.name, COUNT(*) as order_count " +
-                    "FROM \"Order\" o " +
-                    "JOIN Customer c ON o.customer_id = c.id " +
+        String sql = "SELECT c.name, SUM(co.order_count) as order_count " +
+                    "FROM CustomerOrders co " +
+                    "JOIN Customer c ON co.customer_id = c.id " +
                     "GROUP BY c.name " +
+                    "HAVING order_count > 0 " +
                     "ORDER BY order_count DESC " +
                     "LIMIT 10";
         
@@ -635,21 +688,53 @@ public class DashboardController {
      * Create a chart showing order value distribution
      */
     public JFreeChart createOrderValueDistribution() {
-        HistogramDataset dataset = new HistogramDataset();
-        
-        String sql = "SELECT total_amount FROM \"Order\"";
-        List<Double> amounts = DataUtil.query(sql, rs -> rs.getDouble("total_amount"));
-        
-        double[] amountArray = new double[amounts.size()];
-        for (int i = 0; i < amounts.size(); i++) {
-            amountArray[i] = amounts.get(i);
+        StreamingStats amounts = streamStats("SELECT total_amount FROM \"Order\"");
+        return createHistogramChart("Order Value Distribution", "Order Value", "Order Value", amounts);
+    }
+    
+    /**
+     * Read the first column of a query into streaming statistics in one cursor
+     * pass, skipping NULLs; memory stays bounded whatever the row count
+     */
+    private StreamingStats streamStats(String sql) {
+        StreamingStats stats = new StreamingStats();
+        DataUtil.forEach(sql, rs -> {
+            double value = rs.getDouble(1);
+            if (!rs.wasNull()) {
+                stats.add(value);
+            }
+        });
+        return stats;
+    }
+    
+    /**
+     * Histogram of 10 equal-width bins from the minimum to the maximum value,
+     * with the p50/p90/p99 values as a subtitle
+     */
+    private JFreeChart createHistogramChart(String title, String xAxisLabel, String seriesKey, StreamingStats stats) {
+        SimpleHistogramDataset dataset = new SimpleHistogramDataset(seriesKey);
+        dataset.setAdjustForBinSize(false);
+        
+        if (stats.getCount() > 0) {
+            StreamingStats.Histogram histogram = stats.histogram(10);
+            if (stats.getMax() > stats.getMin()) {
+                for (int i = 0; i < histogram.getBinCount(); i++) {
+                    SimpleHistogramBin bin = new SimpleHistogramBin(histogram.getLowerBound(i),
+                            histogram.getUpperBound(i), true, i == histogram.getBinCount() - 1);
+                    bin.setItemCount((int) histogram.getCount(i));
+                    dataset.addBin(bin);
+                }
+            } else {
+                // All values equal: one bin around the value
+                SimpleHistogramBin bin = new SimpleHistogramBin(stats.getMin() - 0.5, stats.getMin() + 0.5);
+                bin.setItemCount((int) stats.getCount());
+                dataset.addBin(bin);
+            }
         }
         
-        dataset.addSeries("Order Value", amountArray, 10);
-        
-        return ChartFactory.createHistogram(
-                "Order Value Distribution",
-                "Order Value",
+        JFreeChart chart = ChartFactory.createHistogram(
+                title,
+                xAxisLabel,
                 "Frequency",
                 dataset,
                 PlotOrientation.VERTICAL,
@@ -657,6 +742,13 @@ public class DashboardController {
                 true,
                 false
         );
+        
+        if (stats.getCount() > 0) {
+            double[] percentiles = stats.quantiles(0.5, 0.9, 0.99);
+            chart.addSubtitle(new TextTitle(String.format("p50 %.2f   p90 %.2f   p99 %.2f",
+                    percentiles[0], percentiles[1], percentiles[2])));
+        }
+        return chart;
     }
     
     /**
@@ -665,11 +757,10 @@ public class DashboardController {
     public JFreeChart createOrderStatusTrend() {
         DefaultCategoryDataset dataset = new DefaultCategoryDataset();
         
-        // Get the last 6 months
-        String sql = "SELECT strftime('%Y-%m', order_date) as month, status, COUNT(*) as count " +
-                    "FROM \"Order\" " +
-                    "WHERE order_date >= date('now', '-6 months') " +
-                    "GROUP BY month, status " +
+        // Get the last 6 months, from the month/status rollup
+        String sql = "SELECT month, status, order_count as count " +
+                    "FROM StatusMonthly " +
+                    "WHERE month >= ? AND order_count > 0 " +
                     "ORDER BY month";
         
         List<Map<String, Object>> results = DataUtil.query(sql, rs -> {
@@ -678,7 +769,7 @@ public class DashboardController {
             result.put("status", rs.getString("status"));
             result.put("count", rs.getInt("count"));
             return result;
-        });
+        }, YearMonth.now().minusMonths(6).toString());
         
         for (Map<String, Object> result : results) {
             dataset.addValue(
@@ -2,18 +2,15 @@ package controller;
 
 import model.InventoryAdjustment;
 import model.Product;
-import util.DBConnection;
 import util.DataUtil;
+import util.DayNumber;
 import util.DataUtil.ResultSetMapper;
 
-import java.sql.Connection;
-import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
-import java.util.Calendar;
 import java.util.Date;
 import java.util.List;
 
@@ -56,10 +53,10 @@ public class InventoryAdjustmentController {
     public List<InventoryAdjustment> getAdjustmentsByDateRange(Date startDate, Date endDate) {
         String sql = "SELECT a.*, p.name as product_name FROM InventoryAdjustment a " +
                      "JOIN Product p ON a.product_id = p.id " +
-                     "WHERE a.date BETWEEN ? AND ? " +
+                     "WHERE a.adj_day >= ? AND a.adj_day < ? " +
                      "ORDER BY a.date DESC";
         
-        return queryAdjustments(sql, startDate, endDate);
+        return queryAdjustments(sql, DayNumber.of(startDate), DayNumber.after(endDate));
     }
     
     /**
@@ -80,33 +77,15 @@ public class InventoryAdjustmentController {
         
         
         
+        // Whole days, as a half-open range of day numbers
         if (startDate != null) {
-            // Convert to start of day for proper comparison
-            Calendar cal = Calendar.getInstance();
-            cal.setTime(startDate);
-            cal.set(Calendar.HOUR_OF_DAY, 0);
-            cal.set(Calendar.MINUTE, 0);
-            cal.set(Calendar.SECOND, 0);
-            startDate = cal.getTime();
-            String startDateStr = dateFormat.format(startDate);
-            sql.append("AND date(a.date) >= date(?) ");
-            params.add(startDateStr);
-            System.out.println("DEBUG - Using start date string: " + startDateStr);
+            sql.append("AND a.adj_day >= ? ");
+            params.add(DayNumber.of(startDate));
         }
 
         if (endDate != null) {
-            // Convert to end of day for proper comparison
-            Calendar cal = Calendar.getInstance();
-            cal.setTime(endDate);
-            cal.set(Calendar.HOUR_OF_DAY, 23);
-            cal.set(Calendar.MINUTE, 59);
-            cal.set(Calendar.SECOND, 59);
-            endDate = cal.getTime();
-            
-            String endDateStr = dateFormat.format(endDate);
-            sql.append("AND date(a.date) <= date(?) ");
-            params.add(endDateStr);
-            System.out.println("DEBUG - Using end date string: " + endDateStr);
+            sql.append("AND a.adj_day < ? ");
+            params.add(DayNumber.after(endDate));
         }
         
         if (reason != null && !reason.trim().isEmpty()) {
@@ -125,9 +104,6 @@ public class InventoryAdjustmentController {
         }
         
         sql.append("ORDER BY a.date DESC");
-        // At the end of the searchAdjustments method, before the return statement
-        System.out.println("DEBUG - SQL Query: " + sql.toString());
-        System.out.println("DEBUG - SQL Params: " + params);
         return queryAdjustments(sql.toString(), params.toArray());
     }
     
@@ -147,92 +123,68 @@ public class InventoryAdjustmentController {
      * Save an adjustment (insert or update)
      */
     public boolean saveAdjustment(InventoryAdjustment adjustment) {
-        boolean success = false;
-        
         try {
-            // Begin transaction
-            DataUtil.beginTransaction();
-            
-            if (adjustment.getId() > 0) {
-                // Get old adjustment to calculate inventory difference
-                InventoryAdjustment oldAdjustment = getAdjustmentById(adjustment.getId());
-                int qtyDifference = adjustment.getChangeQty() - oldAdjustment.getChangeQty();
-                
-                // Update inventory
-                if (qtyDifference != 0) {
-                    updateProductStock(adjustment.getProductId(), qtyDifference);
-                }
-                
-                // Update adjustment record
-                success = DataUtil.update("InventoryAdjustment", adjustment, "id");
-            } else {
-                // Update inventory for new adjustment
-                updateProductStock(adjustment.getProductId(), adjustment.getChangeQty());
-                
-                // Insert new adjustment record
-                int id = DataUtil.insert("InventoryAdjustment", adjustment, "id");
-                if (id > 0) {
+            return DataUtil.inTransaction(conn -> {
+                if (adjustment.getId() > 0) {
+                    // Get old adjustment to calculate inventory difference
+                    InventoryAdjustment oldAdjustment = getAdjustmentById(adjustment.getId());
+                    int qtyDifference = adjustment.getChangeQty() - oldAdjustment.getChangeQty();
+                    
+                    // Update inventory
+                    if (qtyDifference != 0) {
+                        updateProductStock(adjustment.getProductId(), qtyDifference);
+                    }
+                    
+                    // Update adjustment record
+                    if (!DataUtil.update("InventoryAdjustment", adjustment, "id")) {
+                        throw new SQLException("Failed to update adjustment #" + adjustment.getId());
+                    }
+                } else {
+                    // Update inventory for new adjustment
+                    updateProductStock(adjustment.getProductId(), adjustment.getChangeQty());
+                    
+                    // Insert new adjustment record
+                    int id = DataUtil.insert("InventoryAdjustment", adjustment, "id");
+                    if (id <= 0) {
+                        throw new SQLException("Failed to insert adjustment");
+                    }
                     adjustment.setId(id);
-                    success = true;
                 }
-            }
-            
-            // Commit transaction
-            if (success) {
-                DataUtil.commitTransaction();
-            } else {
-                DataUtil.rollbackTransaction();
-            }
+                return true;
+            });
         } catch (SQLException e) {
-            try {
-                DataUtil.rollbackTransaction();
-            } catch (SQLException ex) {
-                System.err.println("Error rolling back transaction: " + ex.getMessage());
-            }
             System.err.println("Error saving adjustment: " + e.getMessage());
             e.printStackTrace();
+            return false;
         }
-        
-        return success;
     }
     
     /**
      * Delete an adjustment
      */
     public boolean deleteAdjustment(int id) {
-        boolean success = false;
-        
         try {
-            // Begin transaction
-            DataUtil.beginTransaction();
-            
-            // Get the adjustment to reverse its effect on inventory
-            InventoryAdjustment adjustment = getAdjustmentById(id);
-            if (adjustment != null) {
+            return DataUtil.inTransaction(conn -> {
+                // Get the adjustment to reverse its effect on inventory
+                InventoryAdjustment adjustment = getAdjustmentById(id);
+                if (adjustment == null) {
+                    return false;
+                }
+                
                 // Reverse the inventory change
                 updateProductStock(adjustment.getProductId(), -adjustment.getChangeQty());
                 
                 // Delete the adjustment record
-                success = DataUtil.delete("InventoryAdjustment", id, "id");
-            }
-            
-            // Commit or rollback transaction
-            if (success) {
-                DataUtil.commitTransaction();
-            } else {
-                DataUtil.rollbackTransaction();
-            }
+                if (!DataUtil.delete("InventoryAdjustment", id, "id")) {
+                    throw new SQLException("Failed to delete adjustment #" + id);
+                }
+                return true;
+            });
         } catch (SQLException e) {
-            try {
-                DataUtil.rollbackTransaction();
-            } catch (SQLException ex) {
-                System.err.println("Error rolling back transaction: " + ex.getMessage());
-            }
             System.err.println("Error deleting adjustment: " + e.getMessage());
             e.printStackTrace();
+            return false;
         }
-        
-        return success;
     }
     
     /**
@@ -241,12 +193,7 @@ public class InventoryAdjustmentController {
     private void updateProductStock(int productId, int changeQty) throws SQLException {
         String sql = "UPDATE Product SET stock_qty = stock_qty + ? WHERE id = ?";
         
-        Connection conn = DBConnection.getConnection();
-        PreparedStatement stmt = conn.prepareStatement(sql);
-        stmt.setInt(1, changeQty);
-        stmt.setInt(2, productId);
-        stmt.executeUpdate();
-        stmt.close();
+        DataUtil.executeUpdate(sql, changeQty, productId);
     }
     
     /**
@@ -272,7 +219,6 @@ public class InventoryAdjustmentController {
                 try {
                     // After getting the date string
                     String dateStr = rs.getString("date");
-                    System.out.println("DEBUG - Date from database: " + dateStr);
 
                     if (dateStr != null) {
                         try {
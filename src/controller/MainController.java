@@ -3,13 +3,28 @@ package controller;
 import javax.swing.*;
 import view.MainFrame;
 import util.DBConnection;
+import util.Messages;
+import util.StockLedger;
 
 public class MainController {
     private MainFrame mainFrame;
     
     public MainController() {
         // Initialize the database connection
-        DBConnection.getConnection();
+        if (DBConnection.getConnection() == null) {
+            JOptionPane.showMessageDialog(null,
+                Messages.getString("error.openDatabase"),
+                Messages.getString("dialog.error"),
+                JOptionPane.ERROR_MESSAGE);
+            System.exit(1);
+        }
+        
+        // Record yesterday's stock balances so point-in-time lookups stay short,
+        // and again after each midnight while the application stays open
+        StockLedger.scheduleCheckpoints();
+        
+        // Pick up report jobs queued before the last exit
+        new ReportController().resumeJobs();
         
         // Create the main application frame
         SwingUtilities.invokeLater(() -> {
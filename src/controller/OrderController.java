@@ -2,12 +2,11 @@ package controller;
 
 import model.Order;
 import model.OrderItem;
-import util.DBConnection;
 import util.DataUtil;
+import util.DayNumber;
+import util.SalesRollup;
 import util.DataUtil.ResultSetMapper;
 
-import java.sql.Connection;
-import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.text.SimpleDateFormat;
@@ -19,6 +18,11 @@ public class OrderController {
     
     private static final SimpleDateFormat DATE_FORMAT = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
     
+    private static final String RESTORE_STOCK_SQL = "UPDATE Product SET stock_qty = stock_qty + ? WHERE id = ?";
+    private static final String DEDUCT_STOCK_SQL = "UPDATE Product SET stock_qty = stock_qty - ? WHERE id = ?";
+    private static final String DELETE_ITEMS_SQL = "DELETE FROM OrderItem WHERE order_id = ?";
+    private static final String UPDATE_STATUS_SQL = "UPDATE \"Order\" SET status = ? WHERE id = ?";
+    
     /**
      * Get all orders with customer info
      */
@@ -84,24 +88,25 @@ public class OrderController {
             params.add(status);
         }
         
+        // Whole days, as a half-open range of day numbers
         if (startDate != null) {
             if (hasWhere) {
-                sql.append("AND o.order_date >= ? ");
+                sql.append("AND o.order_day >= ? ");
             } else {
-                sql.append("WHERE o.order_date >= ? ");
+                sql.append("WHERE o.order_day >= ? ");
                 hasWhere = true;
             }
-            params.add(DATE_FORMAT.format(startDate));
+            params.add(DayNumber.of(startDate));
         }
         
         if (endDate != null) {
             if (hasWhere) {
-                sql.append("AND o.order_date <= ? ");
+                sql.append("AND o.order_day < ? ");
             } else {
-                sql.append("WHERE o.order_date <= ? ");
+                sql.append("WHERE o.order_day < ? ");
                 hasWhere = true;
             }
-            params.add(DATE_FORMAT.format(endDate));
+            params.add(DayNumber.after(endDate));
         }
         
         // Add search term for customer name, product name, or product category
@@ -209,174 +214,67 @@ public class OrderController {
      * Save an order with its items
      */
     public boolean saveOrder(Order order) {
+        boolean isNew = order.getId() <= 0;
+        
         try {
-            System.out.println("DEBUG: Starting order save process for order ID: " + order.getId());
-            
-            // Begin transaction
-            DataUtil.beginTransaction();
-            Connection conn = DBConnection.getConnection();
-            
-            // Set date and calculate total
-            if (order.getOrderDate() == null) {
-                order.setOrderDate(new Date());
-            }
-            order.calculateTotal();
-            System.out.println("DEBUG: Order total calculated: " + order.getTotalAmount());
-            
-            // Handle existing order
-            if (order.getId() > 0) {
-                System.out.println("DEBUG: Updating existing order #" + order.getId());
-                
-                // Get original order with items
-                Order originalOrder = getOrderById(order.getId());
-                System.out.println("DEBUG: Original order items count: " + originalOrder.getOrderItems().size());
+            DataUtil.inTransaction(conn -> {
+                // Set date and calculate total
+                if (order.getOrderDate() == null) {
+                    order.setOrderDate(new Date());
+                }
+                order.calculateTotal();
                 
-                // Print original order items
-                System.out.println("DEBUG: Original order items details:");
-                for (OrderItem originalItem : originalOrder.getOrderItems()) {
-                    System.out.println("DEBUG:   Product ID: " + originalItem.getProductId() + 
-                                    ", Quantity: " + originalItem.getQuantity() +
-                                    ", Unit Price: " + originalItem.getUnitPrice());
+                // Handle existing order
+                if (!isNew) {
+                    // Get original order with items and take it out of the sales rollups
+                    Order originalOrder = getOrderById(order.getId());
+                    if (originalOrder == null) {
+                        throw new SQLException("Order #" + order.getId() + " not found");
+                    }
+                    SalesRollup.removeOrder(order.getId());
+                    
+                    // First restore all original quantities to stock in one batch
+                    DataUtil.executeBatch(RESTORE_STOCK_SQL, stockChanges(originalOrder.getOrderItems()));
                     
-                    // Get current stock level before restoration
-                    String checkStockSql = "SELECT stock_qty FROM Product WHERE id = ?";
-                    PreparedStatement checkStmt = conn.prepareStatement(checkStockSql);
-                    checkStmt.setInt(1, originalItem.getProductId());
-                    ResultSet rs = checkStmt.executeQuery();
-                    int currentStock = 0;
-                    if (rs.next()) {
-                        currentStock = rs.getInt("stock_qty");
+                    // Update order record
+                    if (!DataUtil.update("\"Order\"", order, "id", "customerName", "orderItems")) {
+                        throw new SQLException("Failed to update order #" + order.getId());
                     }
-                    rs.close();
-                    checkStmt.close();
-                    System.out.println("DEBUG:   Current stock before restore: " + currentStock);
                     
-                    // First restore all original quantities to stock
-                    String restoreStockSql = "UPDATE Product SET stock_qty = stock_qty + ? WHERE id = ?";
-                    PreparedStatement restoreStmt = conn.prepareStatement(restoreStockSql);
-                    restoreStmt.setInt(1, originalItem.getQuantity());
-                    restoreStmt.setInt(2, originalItem.getProductId());
-                    int rowsAffected = restoreStmt.executeUpdate();
-                    restoreStmt.close();
-                    System.out.println("DEBUG:   Restored " + originalItem.getQuantity() + 
-                                    " units to product ID: " + originalItem.getProductId() + 
-                                    ", Rows affected: " + rowsAffected);
+                    // Delete old order items
+                    DataUtil.executeUpdate(DELETE_ITEMS_SQL, order.getId());
                     
-                    // Check stock after restoration
-                    checkStmt = conn.prepareStatement(checkStockSql);
-                    checkStmt.setInt(1, originalItem.getProductId());
-                    rs = checkStmt.executeQuery();
-                    if (rs.next()) {
-                        int updatedStock = rs.getInt("stock_qty");
-                        System.out.println("DEBUG:   Stock after restore: " + updatedStock + 
-                                        " (Change: +" + (updatedStock - currentStock) + ")");
+                } else {
+                    // Insert new order
+                    int orderId = DataUtil.insert("\"Order\"", order, "id", "customerName", "orderItems");
+                    if (orderId <= 0) {
+                        throw new SQLException("Failed to create new order");
                     }
-                    rs.close();
-                    checkStmt.close();
+                    order.setId(orderId);
                 }
                 
-                // Update order record
-                System.out.println("DEBUG: Updating order record");
-                if (!DataUtil.update("\"Order\"", order, "id", "customerName", "orderItems")) {
-                    System.out.println("DEBUG: Failed to update order record");
-                    DataUtil.rollbackTransaction();
-                    return false;
-                }
-                
-                // Delete old order items
-                String deleteSql = "DELETE FROM OrderItem WHERE order_id = ?";
-                PreparedStatement deleteStmt = conn.prepareStatement(deleteSql);
-                deleteStmt.setInt(1, order.getId());
-                int deletedCount = deleteStmt.executeUpdate();
-                deleteStmt.close();
-                System.out.println("DEBUG: Deleted " + deletedCount + " original order items");
-                
-            } else {
-                // Insert new order
-                System.out.println("DEBUG: Creating new order");
-                int orderId = DataUtil.insert("\"Order\"", order, "id", "customerName", "orderItems");
-                if (orderId <= 0) {
-                    System.out.println("DEBUG: Failed to create new order");
-                    DataUtil.rollbackTransaction();
-                    return false;
-                }
-                order.setId(orderId);
-                System.out.println("DEBUG: New order created with ID: " + orderId);
-            }
-            
-            // Print new order items
-            System.out.println("DEBUG: New order items to insert: " + order.getOrderItems().size());
-            for (OrderItem item : order.getOrderItems()) {
-                System.out.println("DEBUG:   Product ID: " + item.getProductId() + 
-                                ", Quantity: " + item.getQuantity() +
-                                ", Unit Price: " + item.getUnitPrice());
-            }
-            
-            // Insert order items and update stock
-            for (OrderItem item : order.getOrderItems()) {
-                item.setOrderId(order.getId());
-                
-                // Get current stock level before deduction
-                String checkStockSql = "SELECT stock_qty FROM Product WHERE id = ?";
-                PreparedStatement checkStmt = conn.prepareStatement(checkStockSql);
-                checkStmt.setInt(1, item.getProductId());
-                ResultSet rs = checkStmt.executeQuery();
-                int currentStock = 0;
-                if (rs.next()) {
-                    currentStock = rs.getInt("stock_qty");
+                // Insert order items and update stock, one batch each
+                for (OrderItem item : order.getOrderItems()) {
+                    item.setOrderId(order.getId());
                 }
-                rs.close();
-                checkStmt.close();
-                System.out.println("DEBUG:   Current stock before deduction for product ID " + 
-                                item.getProductId() + ": " + currentStock);
                 
-                // Insert item
-                System.out.println("DEBUG:   Inserting order item for product ID: " + item.getProductId());
-                int itemId = DataUtil.insert("OrderItem", item, "id", "productName");
-                if (itemId <= 0) {
-                    System.out.println("DEBUG:   Failed to insert order item");
-                    DataUtil.rollbackTransaction();
-                    return false;
+                int insertedCount = DataUtil.insertBatch("OrderItem", order.getOrderItems(), "id", "productName");
+                if (insertedCount != order.getOrderItems().size()) {
+                    throw new SQLException("Failed to insert order items");
                 }
-                item.setId(itemId);
-                System.out.println("DEBUG:   Order item inserted with ID: " + itemId);
                 
-                // Reduce stock quantity
-                String updateStockSql = "UPDATE Product SET stock_qty = stock_qty - ? WHERE id = ?";
-                PreparedStatement updateStmt = conn.prepareStatement(updateStockSql);
-                updateStmt.setInt(1, item.getQuantity());
-                updateStmt.setInt(2, item.getProductId());
-                int rowsAffected = updateStmt.executeUpdate();
-                updateStmt.close();
-                System.out.println("DEBUG:   Deducted " + item.getQuantity() + 
-                                " units from product ID: " + item.getProductId() + 
-                                ", Rows affected: " + rowsAffected);
+                DataUtil.executeBatch(DEDUCT_STOCK_SQL, stockChanges(order.getOrderItems()));
                 
-                // Check stock after deduction
-                checkStmt = conn.prepareStatement(checkStockSql);
-                checkStmt.setInt(1, item.getProductId());
-                rs = checkStmt.executeQuery();
-                if (rs.next()) {
-                    int updatedStock = rs.getInt("stock_qty");
-                    System.out.println("DEBUG:   Stock after deduction: " + updatedStock + 
-                                    " (Change: -" + (currentStock - updatedStock) + ")");
-                }
-                rs.close();
-                checkStmt.close();
-            }
+                SalesRollup.addOrder(order.getId());
+                return null;
+            });
             
-            // Commit transaction
-            DataUtil.commitTransaction();
-            System.out.println("DEBUG: Transaction committed successfully");
             return true;
         } catch (SQLException e) {
-            System.out.println("DEBUG: SQL Exception occurred: " + e.getMessage());
-            try {
-                DataUtil.rollbackTransaction();
-                System.out.println("DEBUG: Transaction rolled back");
-            } catch (SQLException ex) {
-                System.out.println("DEBUG: Error during rollback: " + ex.getMessage());
-                ex.printStackTrace();
+            System.err.println("Error saving order: " + e.getMessage());
+            if (isNew) {
+                // The generated ID was rolled back with the insert
+                order.setId(0);
             }
             e.printStackTrace();
             return false;
@@ -387,12 +285,19 @@ public class OrderController {
      * Update order status
      */
     public boolean updateOrderStatus(int orderId, String status) {
-        Order order = getOrderById(orderId);
-        if (order != null) {
-            order.setStatus(status);
-            return DataUtil.update("\"Order\"", order, "id");
+        try {
+            return DataUtil.inTransaction(conn -> {
+                SalesRollup.removeOrder(orderId);
+                if (DataUtil.executeUpdate(UPDATE_STATUS_SQL, status, orderId) == 0) {
+                    throw new SQLException("Order #" + orderId + " not found");
+                }
+                SalesRollup.addOrder(orderId);
+                return true;
+            });
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return false;
         }
-        return false;
     }
     
     /**
@@ -400,34 +305,32 @@ public class OrderController {
      */
     public boolean deleteOrder(int id) {
         try {
-            // Begin transaction
-            DataUtil.beginTransaction();
-            
-            // Delete order items first
-            String deleteItemsSql = "DELETE FROM OrderItem WHERE order_id = ?";
-            Connection conn = DBConnection.getConnection();
-            PreparedStatement deleteItemsStmt = conn.prepareStatement(deleteItemsSql);
-            deleteItemsStmt.setInt(1, id);
-            deleteItemsStmt.executeUpdate();
-            deleteItemsStmt.close();
-            
-            // Delete the order
-            if (!DataUtil.delete("\"Order\"", id, "id")) {
-                DataUtil.rollbackTransaction();
-                return false;
-            }
-            
-            // Commit transaction
-            DataUtil.commitTransaction();
-            return true;
+            return DataUtil.inTransaction(conn -> {
+                SalesRollup.removeOrder(id);
+                
+                // Delete order items first
+                DataUtil.executeUpdate(DELETE_ITEMS_SQL, id);
+                
+                // Delete the order
+                if (!DataUtil.delete("\"Order\"", id, "id")) {
+                    throw new SQLException("Order #" + id + " not found");
+                }
+                return true;
+            });
         } catch (SQLException e) {
-            try {
-                DataUtil.rollbackTransaction();
-            } catch (SQLException ex) {
-                ex.printStackTrace();
-            }
             e.printStackTrace();
             return false;
         }
     }
+    
+    /**
+     * Build (quantity, product ID) parameter rows for the stock update statements
+     */
+    private List<Object[]> stockChanges(List<OrderItem> items) {
+        List<Object[]> rows = new ArrayList<>(items.size());
+        for (OrderItem item : items) {
+            rows.add(new Object[] {item.getQuantity(), item.getProductId()});
+        }
+        return rows;
+    }
 }
\ No newline at end of file
@@ -188,12 +188,13 @@ public class ProductController {
         }
         
         try {
-            // Begin transaction
-            DataUtil.beginTransaction();
-            
-            // Get the product by ID to get its current stock quantity
-            Product product = getProductById(productId);
-            if (product != null) {
+            return DataUtil.inTransaction(conn -> {
+                // Get the product by ID to get its current stock quantity
+                Product product = getProductById(productId);
+                if (product == null) {
+                    return false;
+                }
+                
                 // Create a new product object with only the fields needed for the update
                 Product updateProduct = new Product();
                 updateProduct.setId(productId);
@@ -207,8 +208,7 @@ public class ProductController {
                 
                 // Update product stock
                 if (!DataUtil.update("Product", updateProduct, "id")) {
-                    DataUtil.rollbackTransaction();
-                    return false;
+                    throw new SQLException("Failed to update stock of product #" + productId);
                 }
                 
                 // Create adjustment record
@@ -220,23 +220,11 @@ public class ProductController {
                 
                 int id = DataUtil.insert("InventoryAdjustment", adjustment, "id");
                 if (id <= 0) {
-                    DataUtil.rollbackTransaction();
-                    return false;
+                    throw new SQLException("Failed to record adjustment for product #" + productId);
                 }
-                
-                // Commit transaction
-                DataUtil.commitTransaction();
                 return true;
-            }
-            
-            DataUtil.rollbackTransaction();
-            return false;
+            });
         } catch (SQLException e) {
-            try {
-                DataUtil.rollbackTransaction();
-            } catch (SQLException ex) {
-                ex.printStackTrace();
-            }
             e.printStackTrace();
             return false;
         }
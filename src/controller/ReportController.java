@@ -1,58 +1,112 @@
 package controller;
 
 import model.Report;
+import model.ReportJob;
+import model.ReportParameters;
+import util.AppConfig;
+import util.CsvExporter;
 import util.DataUtil;
-import util.DataUtil.ResultSetMapper;
-
-import org.apache.pdfbox.pdmodel.PDDocument;
-import org.apache.pdfbox.pdmodel.PDPage;
-import org.apache.pdfbox.pdmodel.PDPageContentStream;
-import org.apache.pdfbox.pdmodel.font.PDType1Font;
-
-
+import util.DayNumber;
+import util.JobControl;
+import util.PdfTableWriter;
 
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.sql.ResultSet;
-import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
 public class ReportController {
     
     private static final SimpleDateFormat DATE_FORMAT = new SimpleDateFormat("yyyy-MM-dd_HH-mm-ss");
     private static final String REPORTS_DIR = "reports";
     
+    // Workers for report jobs, so a large export never runs on the event thread
+    private static ExecutorService jobPool;
+    
+    // Controls of the jobs queued or running in this process, by job ID
+    private static final Map<Integer, JobControl> JOB_CONTROLS = new ConcurrentHashMap<>();
+    
+    private static final List<Consumer<ReportJob>> JOB_LISTENERS = new CopyOnWriteArrayList<>();
+    
+    // This instance of the application, as the owner of the jobs it runs. Each
+    // instance sharing the database beats in ReportWorker while it is running;
+    // jobs whose owner has not beaten for a while are recovered by another one.
+    private static final String OWNER = UUID.randomUUID().toString();
+    private static final long HEARTBEAT_SECONDS = 30;
+    private static final long OWNER_TIMEOUT_MILLIS = 4 * HEARTBEAT_SECONDS * 1000;
+    private static ScheduledExecutorService heartbeat;
+    
+    // Jobs still active whose owner is not this instance and has stopped beating
+    private static final String ORPHANED_SQL =
+        "(owner IS NULL OR (owner <> ? AND owner NOT IN " +
+        "(SELECT owner FROM ReportWorker WHERE heartbeat >= ?)))";
+    
     /**
      * Generate a report
      * @param reportType Type of report (e.g., "Inventory", "Sales")
-     * @param format Output format ("CSV" or "PDF")
-     * @param parameters Report parameters as JSON string
+     * @param format Output format ("CSV", "CSV.GZ" or "PDF")
+     * @param parameters Report filters as JSON, see {@link ReportParameters#toJson()}
      * @return Generated report object with file path
      */
     public Report generateReport(String reportType, String format, String parameters) {
+        return generateReport(reportType, format, parameters, null);
+    }
+    
+    private Report generateReport(String reportType, String format, String parameters, JobControl control) {
+        // Stored in normalized form, so the same filters always read the same
+        String filters = ReportParameters.fromJson(parameters).toJson();
+        
+        // A report of unchanged data is handed back instead of written again
+        String fingerprint = fingerprint(reportType, format, filters);
+        Report earlier = findReport(fingerprint);
+        if (earlier != null) {
+            return earlier;
+        }
+        
         // Create reports directory if it doesn't exist
         createReportsDirectory();
         
         Report report = new Report();
         report.setReportType(reportType);
         report.setGeneratedOn(new Date());
-        report.setParameters(parameters);
+        report.setParameters(filters);
+        report.setFingerprint(fingerprint);
         
-        String fileName = reportType + "_" + DATE_FORMAT.format(report.getGeneratedOn()) + "." + format.toLowerCase();
-        String filePath = REPORTS_DIR + File.separator + fileName;
+        String filePath = reserveFilePath(reportType, report.getGeneratedOn(), format);
         report.setFilePath(filePath);
         
+        ReportQuery query = getReportQuery(reportType, filters);
+        if (control != null) {
+            // Expected rows, for the progress shown while the file is written
+            DataUtil.forEach("SELECT COUNT(*) FROM (" + query.sql + ")", 1, control,
+                    rs -> control.setRowsTotal(rs.getLong(1)), query.parameters());
+        }
+        
         // Generate the actual report file
         boolean success = false;
-        if ("CSV".equalsIgnoreCase(format)) {
-            success = generateCsvReport(report);
+        if ("CSV".equalsIgnoreCase(format) || "CSV.GZ".equalsIgnoreCase(format)) {
+            success = generateCsvReport(report, query, control);
         } else if ("PDF".equalsIgnoreCase(format)) {
-            success = generatePdfReport(report); // Use the new method
+            success = generatePdfReport(report, query, control);
         }
         
         if (success) {
@@ -64,307 +118,508 @@ public class ReportController {
             }
         }
         
+        // Do not leave a partial file behind a failed or cancelled report
+        new File(filePath).delete();
         return null;
     }
+    
     /**
-     * Get all reports
+     * Fingerprint of a report's output: its type, format and filters, and the
+     * stored versions of the tables it reads. The versions are kept by triggers
+     * in the database, so they hold across restarts and see writes made by any
+     * other instance of the application.
+     * @return The fingerprint, or null if the versions cannot be read
      */
-    public List<Report> getAllReports() {
-        String sql = "SELECT * FROM Report ORDER BY generated_on DESC";
-        
-        return DataUtil.query(sql, new ResultSetMapper<Report>() {
-            @Override
-            public Report map(ResultSet rs) throws SQLException {
-                Report report = new Report();
-                report.setId(rs.getInt("id"));
-                report.setReportType(rs.getString("report_type"));
-                
-                try {
-                    SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
-                    report.setGeneratedOn(dateFormat.parse(rs.getString("generated_on")));
-                } catch (Exception e) {
-                    report.setGeneratedOn(new Date());
-                }
-                
-                report.setParameters(rs.getString("parameters"));
-                report.setFilePath(rs.getString("file_path"));
-                
-                return report;
+    private static String fingerprint(String reportType, String format, String filters) {
+        String version = tableVersions(getReportTables(reportType));
+        if (version == null) {
+            return null;
+        }
+        String key = reportType + "|" + format.toUpperCase() + "|" + filters + "|" + version;
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            StringBuilder hex = new StringBuilder();
+            for (byte b : md.digest(key.getBytes(StandardCharsets.UTF_8))) {
+                hex.append(String.format("%02x", b));
             }
-        });
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("Error hashing report fingerprint", e);
+        }
     }
     
     /**
-     * Get a report by ID
+     * Versions of the given tables from TableVersion, e.g. "Category=3,Product=17"
      */
-    public Report getReportById(int id) {
-        String sql = "SELECT * FROM Report WHERE id = ?";
-        
-        List<Report> reports = DataUtil.query(sql, new ResultSetMapper<Report>() {
-            @Override
-            public Report map(ResultSet rs) throws SQLException {
-                Report report = new Report();
-                report.setId(rs.getInt("id"));
-                report.setReportType(rs.getString("report_type"));
-                
-                try {
-                    SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
-                    report.setGeneratedOn(dateFormat.parse(rs.getString("generated_on")));
-                } catch (Exception e) {
-                    report.setGeneratedOn(new Date());
-                }
-                
-                report.setParameters(rs.getString("parameters"));
-                report.setFilePath(rs.getString("file_path"));
-                
+    private static String tableVersions(String[] tables) {
+        String placeholders = String.join(", ", Collections.nCopies(tables.length, "?"));
+        Object versions = DataUtil.queryScalar(
+                "SELECT group_concat(table_name || '=' || version) FROM "
+                + "(SELECT table_name, version FROM TableVersion WHERE table_name IN (" + placeholders + ") "
+                + "ORDER BY table_name)", (Object[]) tables);
+        return versions != null ? versions.toString() : null;
+    }
+    
+    /**
+     * The newest report with the given fingerprint whose file still exists
+     */
+    private Report findReport(String fingerprint) {
+        if (fingerprint == null) {
+            return null;
+        }
+        List<Report> reports = DataUtil.query("SELECT * FROM Report WHERE fingerprint = ? ORDER BY id DESC",
+                this::mapReport, fingerprint);
+        for (Report report : reports) {
+            if (new File(report.getFilePath()).isFile()) {
                 return report;
             }
-        }, id);
-        
-        return reports.isEmpty() ? null : reports.get(0);
+        }
+        return null;
     }
     
     /**
-     * Create reports directory if it doesn't exist
+     * Tables a report type reads, including the rollups it may read instead of
+     * the orders
      */
-    private void createReportsDirectory() {
-        File reportsDir = new File(REPORTS_DIR);
-        if (!reportsDir.exists()) {
-            reportsDir.mkdirs();
+    private static String[] getReportTables(String reportType) {
+        switch (reportType) {
+            case "Inventory":
+            case "LowStock":
+                return new String[] {"Product", "Category", "Supplier"};
+            case "Sales":
+                return new String[] {"Order", "Customer", "OrderItem", "Product"};
+            case "TopProducts":
+                return new String[] {"ProductSales", "Product", "Order", "OrderItem"};
+            default:
+                return new String[] {"Product"};
         }
     }
     
     /**
-     * Generate a CSV report file
+     * Queue a report to be generated in the background. Listeners added with
+     * {@link #addJobListener} hear about the job as it starts and ends.
+     * @param reportType Type of report (e.g., "Inventory", "Sales")
+     * @param format Output format ("CSV", "CSV.GZ" or "PDF")
+     * @param parameters Report filters as JSON, see {@link ReportParameters#toJson()}
+     * @return The queued job, or null if it could not be saved
      */
-    private boolean generateCsvReport(Report report) {
-        String sql = getReportQuery(report.getReportType(), report.getParameters());
-        
-        try (FileWriter writer = new FileWriter(report.getFilePath())) {
-            // Execute query and write results to CSV
-            List<Map<String, Object>> results = DataUtil.query(sql, rs -> {
-                Map<String, Object> row = new java.util.HashMap<>();
-                ResultSetMetaData metaData = rs.getMetaData();
-                
-                for (int i = 1; i <= metaData.getColumnCount(); i++) {
-                    String columnName = metaData.getColumnName(i);
-                    row.put(columnName, rs.getObject(i));
-                }
-                
-                return row;
+    public ReportJob submitReport(String reportType, String format, String parameters) {
+        ReportJob job = new ReportJob(reportType, format, ReportParameters.fromJson(parameters).toJson());
+        job.setOwner(OWNER);
+        int id = DataUtil.insert("ReportJob", job, "id");
+        if (id <= 0) {
+            return null;
+        }
+        job.setId(id);
+        enqueue(job);
+        return job;
+    }
+    
+    /**
+     * Start beating as a job owner and recover the jobs of instances that have
+     * stopped, now and at every beat. Jobs of instances still running, on this
+     * machine or another one sharing the database, are left to them.
+     */
+    public void resumeJobs() {
+        synchronized (ReportController.class) {
+            if (heartbeat != null) {
+                return;
+            }
+            heartbeat = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "report-heartbeat");
+                thread.setDaemon(true);
+                return thread;
             });
-            
-            if (!results.isEmpty()) {
-                // Write header
-                Map<String, Object> firstRow = results.get(0);
-                boolean first = true;
-                for (String columnName : firstRow.keySet()) {
-                    if (!first) {
-                        writer.append(",");
-                    }
-                    writer.append('"').append(escapeCsv(columnName)).append('"');
-                    first = false;
-                }
-                writer.append("\n");
-                
-                // Write data rows
-                for (Map<String, Object> row : results) {
-                    first = true;
-                    for (Object value : row.values()) {
-                        if (!first) {
-                            writer.append(",");
-                        }
-                        
-                        String valueStr = (value != null) ? value.toString() : "";
-                        writer.append('"').append(escapeCsv(valueStr)).append('"');
-                        
-                        first = false;
-                    }
-                    writer.append("\n");
+        }
+        // An exception escaping the task would cancel the later beats
+        heartbeat.scheduleWithFixedDelay(() -> {
+            try {
+                if (beat()) {
+                    recoverJobs();
                 }
+            } catch (RuntimeException e) {
+                System.err.println("Error recovering report jobs: " + e.getMessage());
+                e.printStackTrace();
             }
-            
+        }, 0, HEARTBEAT_SECONDS, TimeUnit.SECONDS);
+    }
+    
+    private static boolean beat() {
+        try {
+            DataUtil.executeUpdate("INSERT OR REPLACE INTO ReportWorker (owner, heartbeat) VALUES (?, ?)",
+                    OWNER, System.currentTimeMillis());
             return true;
-        } catch (IOException e) {
-            e.printStackTrace();
+        } catch (SQLException e) {
+            System.err.println("Error recording report worker heartbeat: " + e.getMessage());
             return false;
         }
     }
     
     /**
-     * Generate a PDF report file
+     * Take over the jobs of owners that stopped: the ones they left running are
+     * marked as failed, as their partial files cannot be trusted, and the ones
+     * left waiting are claimed and queued here. Each claim is a single update,
+     * so two instances never both take the same job.
      */
-    private boolean generatePdfReport(Report report) {
-        String sql = getReportQuery(report.getReportType(), report.getParameters());
+    private void recoverJobs() {
+        long liveSince = System.currentTimeMillis() - OWNER_TIMEOUT_MILLIS;
+        try {
+            DataUtil.executeUpdate("UPDATE ReportJob SET status = ?, error = ?, finished_on = ? " +
+                    "WHERE status = ? AND " + ORPHANED_SQL,
+                    ReportJob.FAILED, "Interrupted", new Date(), ReportJob.RUNNING, OWNER, liveSince);
+        } catch (SQLException e) {
+            System.err.println("Error marking interrupted report jobs: " + e.getMessage());
+        }
         
+        List<ReportJob> queued = DataUtil.query("SELECT * FROM ReportJob WHERE status = ? AND " + ORPHANED_SQL +
+                " ORDER BY id", this::mapJob, ReportJob.QUEUED, OWNER, liveSince);
+        for (ReportJob job : queued) {
+            try {
+                int claimed = DataUtil.executeUpdate("UPDATE ReportJob SET owner = ? " +
+                        "WHERE id = ? AND status = ? AND " + ORPHANED_SQL,
+                        OWNER, job.getId(), ReportJob.QUEUED, OWNER, liveSince);
+                if (claimed == 1) {
+                    job.setOwner(OWNER);
+                    enqueue(job);
+                }
+            } catch (SQLException e) {
+                System.err.println("Error claiming report job " + job.getId() + ": " + e.getMessage());
+            }
+        }
+    }
+    
+    /**
+     * Cancel a queued or running job; a running statement is interrupted
+     * @return true if the job was still active
+     */
+    public boolean cancelJob(int jobId) {
+        JobControl control = JOB_CONTROLS.get(jobId);
+        if (control == null) {
+            return false;
+        }
+        control.cancel();
+        return true;
+    }
+    
+    /**
+     * Live progress of a queued or running job
+     * @return The job's control, or null once the job has ended
+     */
+    public JobControl getJobControl(int jobId) {
+        return JOB_CONTROLS.get(jobId);
+    }
+    
+    /**
+     * The most recent jobs, newest first
+     */
+    public List<ReportJob> getRecentJobs(int limit) {
+        return DataUtil.query("SELECT * FROM ReportJob ORDER BY id DESC LIMIT ?", this::mapJob, limit);
+    }
+    
+    /**
+     * Listen to report jobs starting and ending. Listeners are called on the
+     * job's worker thread.
+     */
+    public void addJobListener(Consumer<ReportJob> listener) {
+        JOB_LISTENERS.add(listener);
+    }
+    
+    public void removeJobListener(Consumer<ReportJob> listener) {
+        JOB_LISTENERS.remove(listener);
+    }
+    
+    private void enqueue(ReportJob job) {
+        JobControl control = new JobControl();
+        JOB_CONTROLS.put(job.getId(), control);
+        fireJobChanged(job);
+        jobPool().submit(() -> runJob(job, control));
+    }
+    
+    private void runJob(ReportJob job, JobControl control) {
         try {
-            // Create a new PDF document
-            PDDocument document = new PDDocument();
-            PDPage page = new PDPage();
-            document.addPage(page);
-            
-            // Create a content stream for writing to the PDF
-            PDPageContentStream contentStream = new PDPageContentStream(document, page);
-            
-            // Set fonts - using the correct approach for PDFBox 2.0.33
-            PDType1Font titleFont = PDType1Font.HELVETICA_BOLD;
-            PDType1Font headerFont = PDType1Font.HELVETICA_BOLD;
-            PDType1Font contentFont = PDType1Font.HELVETICA;
-            
-            // Set starting position
-            float yPosition = page.getMediaBox().getHeight() - 50;
-            float margin = 50;
-            float tableWidth = page.getMediaBox().getWidth() - 2 * margin;
-            
-            // Add report title
-            contentStream.beginText();
-            contentStream.setFont(titleFont, 16);
-            contentStream.newLineAtOffset(margin, yPosition);
-            contentStream.showText(report.getReportType() + " Report");
-            contentStream.endText();
-            
-            yPosition -= 30;
-            
-            // Add report metadata
-            contentStream.beginText();
-            contentStream.setFont(contentFont, 12);
-            contentStream.newLineAtOffset(margin, yPosition);
-            contentStream.showText("Generated On: " + new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(report.getGeneratedOn()));
-            contentStream.endText();
+            if (control.isCancelled()) {
+                finishJob(job, ReportJob.CANCELLED, null);
+                return;
+            }
             
-            yPosition -= 20;
+            job.setStatus(ReportJob.RUNNING);
+            job.setStartedOn(new Date());
+            DataUtil.update("ReportJob", job, "id");
+            fireJobChanged(job);
             
-            // Execute query and get results
-            List<Map<String, Object>> results = DataUtil.query(sql, rs -> {
-                Map<String, Object> row = new java.util.HashMap<>();
-                ResultSetMetaData metaData = rs.getMetaData();
-                
-                for (int i = 1; i <= metaData.getColumnCount(); i++) {
-                    String columnName = metaData.getColumnName(i);
-                    row.put(columnName, rs.getObject(i));
-                }
-                
-                return row;
+            Report report = generateReport(job.getReportType(), job.getFormat(), job.getParameters(), control);
+            job.setRowsTotal(control.getRowsTotal());
+            job.setRowsDone(control.getRowsDone());
+            if (report != null) {
+                job.setReportId(report.getId());
+                finishJob(job, ReportJob.DONE, null);
+            } else if (control.isCancelled()) {
+                finishJob(job, ReportJob.CANCELLED, null);
+            } else {
+                finishJob(job, ReportJob.FAILED, "Report generation failed");
+            }
+        } catch (RuntimeException e) {
+            System.err.println("Error running report job " + job.getId() + ": " + e.getMessage());
+            e.printStackTrace();
+            finishJob(job, ReportJob.FAILED, e.getMessage());
+        }
+    }
+    
+    private void finishJob(ReportJob job, String status, String error) {
+        job.setStatus(status);
+        job.setError(error);
+        job.setFinishedOn(new Date());
+        DataUtil.update("ReportJob", job, "id");
+        JOB_CONTROLS.remove(job.getId());
+        fireJobChanged(job);
+    }
+    
+    private void fireJobChanged(ReportJob job) {
+        for (Consumer<ReportJob> listener : JOB_LISTENERS) {
+            listener.accept(job);
+        }
+    }
+    
+    private static synchronized ExecutorService jobPool() {
+        if (jobPool == null) {
+            AtomicInteger count = new AtomicInteger();
+            int threads = Math.max(1, AppConfig.getInt("reports.jobThreads", 2));
+            jobPool = Executors.newFixedThreadPool(threads, runnable -> {
+                Thread thread = new Thread(runnable, "report-job-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
             });
-            
-            if (!results.isEmpty()) {
-                // Get column names and calculate column width
-                Map<String, Object> firstRow = results.get(0);
-                String[] columns = firstRow.keySet().toArray(new String[0]);
-                float colWidth = tableWidth / columns.length;
-                
-                // Draw table headers
-                contentStream.setFont(headerFont, 12);
-                contentStream.beginText();
-                contentStream.newLineAtOffset(margin, yPosition);
-                
-                for (String column : columns) {
-                    contentStream.showText(column);
-                    contentStream.newLineAtOffset(colWidth, 0);
-                }
-                contentStream.endText();
-                
-                yPosition -= 20;
-                
-                // Draw a line under headers
-                contentStream.moveTo(margin, yPosition);
-                contentStream.lineTo(margin + tableWidth, yPosition);
-                contentStream.stroke();
-                
-                yPosition -= 15;
-                
-                // Draw data rows
-                contentStream.setFont(contentFont, 10);
-                
-                for (Map<String, Object> row : results) {
-                    // Check if we need a new page
-                    if (yPosition < 100) {
-                        contentStream.close();
-                        page = new PDPage();
-                        document.addPage(page);
-                        contentStream = new PDPageContentStream(document, page);
-                        contentStream.setFont(contentFont, 10);
-                        yPosition = page.getMediaBox().getHeight() - 50;
-                    }
-                    
-                    contentStream.beginText();
-                    contentStream.newLineAtOffset(margin, yPosition);
-                    
-                    for (String column : columns) {
-                        Object value = row.get(column);
-                        String text = value != null ? value.toString() : "";
-                        // Truncate text if too long for column
-                        if (text.length() > 15) {
-                            text = text.substring(0, 12) + "...";
-                        }
-                        contentStream.showText(text);
-                        contentStream.newLineAtOffset(colWidth, 0);
-                    }
-                    
-                    contentStream.endText();
-                    yPosition -= 15;
+        }
+        return jobPool;
+    }
+    
+    private Report mapReport(ResultSet rs) throws SQLException {
+        Report report = new Report();
+        report.setId(rs.getInt("id"));
+        report.setReportType(rs.getString("report_type"));
+        
+        Date generatedOn = parseDate(rs.getString("generated_on"));
+        report.setGeneratedOn(generatedOn != null ? generatedOn : new Date());
+        
+        report.setParameters(rs.getString("parameters"));
+        report.setFilePath(rs.getString("file_path"));
+        report.setFingerprint(rs.getString("fingerprint"));
+        
+        return report;
+    }
+    
+    private ReportJob mapJob(ResultSet rs) throws SQLException {
+        ReportJob job = new ReportJob();
+        job.setId(rs.getInt("id"));
+        job.setReportType(rs.getString("report_type"));
+        job.setFormat(rs.getString("format"));
+        job.setParameters(rs.getString("parameters"));
+        job.setStatus(rs.getString("status"));
+        job.setRowsDone(rs.getLong("rows_done"));
+        job.setRowsTotal(rs.getLong("rows_total"));
+        int reportId = rs.getInt("report_id");
+        job.setReportId(rs.wasNull() ? null : reportId);
+        job.setError(rs.getString("error"));
+        job.setQueuedOn(parseDate(rs.getString("queued_on")));
+        job.setStartedOn(parseDate(rs.getString("started_on")));
+        job.setFinishedOn(parseDate(rs.getString("finished_on")));
+        job.setOwner(rs.getString("owner"));
+        return job;
+    }
+    
+    private static Date parseDate(String text) {
+        if (text == null) {
+            return null;
+        }
+        try {
+            return new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").parse(text);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+    /**
+     * Get all reports
+     */
+    public List<Report> getAllReports() {
+        String sql = "SELECT * FROM Report ORDER BY generated_on DESC";
+        
+        return DataUtil.query(sql, this::mapReport);
+    }
+    
+    /**
+     * Get a report by ID
+     */
+    public Report getReportById(int id) {
+        String sql = "SELECT * FROM Report WHERE id = ?";
+        
+        List<Report> reports = DataUtil.query(sql, this::mapReport, id);
+        
+        return reports.isEmpty() ? null : reports.get(0);
+    }
+    
+    /**
+     * Pick the report's file name and create it empty, so that two jobs starting
+     * in the same second cannot write to the same file
+     */
+    private static synchronized String reserveFilePath(String reportType, Date generatedOn, String format) {
+        String base = REPORTS_DIR + File.separator + reportType + "_" + DATE_FORMAT.format(generatedOn);
+        String extension = "." + format.toLowerCase();
+        File file = new File(base + extension);
+        for (int i = 2; ; i++) {
+            try {
+                if (file.createNewFile()) {
+                    return file.getPath();
                 }
+            } catch (IOException e) {
+                // Let the export report the problem with the file
+                return file.getPath();
             }
-            
-            // Close the content stream
-            contentStream.close();
-            
-            // Save the document
-            document.save(report.getFilePath());
-            document.close();
-            
-            return true;
-        } catch (Exception e) {
-            e.printStackTrace();
-            return false;
+            file = new File(base + "_" + i + extension);
+        }
+    }
+    
+    /**
+     * Create reports directory if it doesn't exist
+     */
+    private void createReportsDirectory() {
+        File reportsDir = new File(REPORTS_DIR);
+        if (!reportsDir.exists()) {
+            reportsDir.mkdirs();
         }
     }
+    
+    /**
+     * Generate a CSV report file, gzipped when its name ends in ".gz"
+     */
+    private boolean generateCsvReport(Report report, ReportQuery query, JobControl control) {
+        String filePath = report.getFilePath();
+        return CsvExporter.export(query.sql, filePath, filePath.endsWith(".gz"), control, query.parameters()) >= 0;
+    }
+    
     /**
-     * Get SQL query for the report type
+     * Generate a PDF report file
      */
-    private String getReportQuery(String reportType, String parameters) {
+    private boolean generatePdfReport(Report report, ReportQuery query, JobControl control) {
+        String generatedOn = "Generated On: " + new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(report.getGeneratedOn());
+        return PdfTableWriter.export(query.sql, report.getReportType() + " Report", generatedOn, report.getFilePath(),
+                control, query.parameters()) >= 0;
+    }
+    
+    /**
+     * Get the SQL query for the report type, with the report's filters as
+     * parameters of its WHERE clause. Date ranges go on the indexed order_day
+     * column and the other filters on indexed foreign keys, so a filtered report
+     * reads only the rows it needs.
+     */
+    private ReportQuery getReportQuery(String reportType, String parameters) {
+        ReportParameters filters = ReportParameters.fromJson(parameters);
+        ReportQuery query = new ReportQuery();
+        
         switch (reportType) {
             case "Inventory":
-                return "SELECT p.id, p.sku, p.name, c.name as category, s.name as supplier, " +
-                       "p.unit_price, p.stock_qty, p.reorder_level " +
-                       "FROM Product p " +
-                       "LEFT JOIN Category c ON p.category_id = c.id " +
-                       "LEFT JOIN Supplier s ON p.supplier_id = s.id " +
-                       "ORDER BY p.name";
-                
             case "LowStock":
-                return "SELECT p.id, p.sku, p.name, c.name as category, s.name as supplier, " +
+                if ("LowStock".equals(reportType)) {
+                    query.where("p.stock_qty <= p.reorder_level");
+                }
+                addProductFilters(query, filters, "p");
+                return query.build(
+                       "SELECT p.id, p.sku, p.name, c.name as category, s.name as supplier, " +
                        "p.unit_price, p.stock_qty, p.reorder_level " +
                        "FROM Product p " +
                        "LEFT JOIN Category c ON p.category_id = c.id " +
-                       "LEFT JOIN Supplier s ON p.supplier_id = s.id " +
-                       "WHERE p.stock_qty <= p.reorder_level " +
-                       "ORDER BY (p.reorder_level - p.stock_qty) DESC";
+                       "LEFT JOIN Supplier s ON p.supplier_id = s.id",
+                       "LowStock".equals(reportType)
+                               ? "ORDER BY (p.reorder_level - p.stock_qty) DESC"
+                               : "ORDER BY p.name");
                 
             case "Sales":
-                return "SELECT o.id, o.order_date, c.name as customer, o.total_amount, o.status " +
+                addOrderFilters(query, filters);
+                if (filters.getCategoryId() != null || filters.getSupplierId() != null) {
+                    // Orders with at least one item of a matching product
+                    ReportQuery items = new ReportQuery();
+                    items.where("oi.order_id = o.id");
+                    addProductFilters(items, filters, "ip");
+                    query.where("EXISTS (" + items.build(
+                            "SELECT 1 FROM OrderItem oi JOIN Product ip ON oi.product_id = ip.id", "").sql + ")",
+                            items.params.toArray());
+                }
+                return query.build(
+                       "SELECT o.id, o.order_date, c.name as customer, o.total_amount, o.status " +
                        "FROM \"Order\" o " +
-                       "LEFT JOIN Customer c ON o.customer_id = c.id " +
-                       "ORDER BY o.order_date DESC";
+                       "LEFT JOIN Customer c ON o.customer_id = c.id",
+                       "ORDER BY o.order_date DESC");
                 
             case "TopProducts":
-                return "SELECT p.name, SUM(oi.quantity) as quantity_sold, " +
+                addProductFilters(query, filters, "p");
+                if (!filters.hasOrderFilters()) {
+                    // Totals over all orders are kept in the ProductSales rollup
+                    query.where("ps.quantity > 0");
+                    query.params.add(filters.getTopNOrDefault());
+                    return query.build(
+                           "SELECT p.name, ps.quantity as quantity_sold, ps.revenue as total_sales " +
+                           "FROM ProductSales ps " +
+                           "JOIN Product p ON ps.product_id = p.id",
+                           "ORDER BY quantity_sold DESC LIMIT ?");
+                }
+                addOrderFilters(query, filters);
+                query.params.add(filters.getTopNOrDefault());
+                return query.build(
+                       "SELECT p.name, SUM(oi.quantity) as quantity_sold, " +
                        "SUM(oi.quantity * oi.unit_price) as total_sales " +
-                       "FROM OrderItem oi " +
-                       "JOIN Product p ON oi.product_id = p.id " +
-                       "GROUP BY p.name " +
-                       "ORDER BY quantity_sold DESC " +
-                       "LIMIT 10";
+                       "FROM \"Order\" o " +
+                       "JOIN OrderItem oi ON oi.order_id = o.id " +
+                       "JOIN Product p ON oi.product_id = p.id",
+                       "GROUP BY p.id ORDER BY quantity_sold DESC LIMIT ?");
                 
             default:
-                return "SELECT * FROM Product";
+                return query.build("SELECT * FROM Product", "");
+        }
+    }
+    
+    private static void addProductFilters(ReportQuery query, ReportParameters filters, String alias) {
+        if (filters.getCategoryId() != null) {
+            query.where(alias + ".category_id = ?", filters.getCategoryId());
+        }
+        if (filters.getSupplierId() != null) {
+            query.where(alias + ".supplier_id = ?", filters.getSupplierId());
+        }
+    }
+    
+    private static void addOrderFilters(ReportQuery query, ReportParameters filters) {
+        if (filters.getFromDate() != null) {
+            query.where("o.order_day >= ?", DayNumber.of(filters.getFromDate()));
+        }
+        if (filters.getToDate() != null) {
+            query.where("o.order_day < ?", DayNumber.of(filters.getToDate()) + 1);
+        }
+        if (filters.getCustomerId() != null) {
+            query.where("o.customer_id = ?", filters.getCustomerId());
+        }
+        if (filters.getStatus() != null) {
+            query.where("o.status = ?", filters.getStatus());
         }
     }
     
     /**
-     * Escape double quotes in CSV
+     * SQL text of a report and the values of its parameters
      */
-    private String escapeCsv(String value) {
-        return value.replace("\"", "\"\"");
+    private static class ReportQuery {
+        private final StringBuilder conditions = new StringBuilder();
+        private final List<Object> params = new ArrayList<>();
+        private String sql;
+        
+        void where(String condition, Object... values) {
+            conditions.append(conditions.length() == 0 ? " WHERE " : " AND ").append(condition);
+            params.addAll(Arrays.asList(values));
+        }
+        
+        ReportQuery build(String select, String tail) {
+            sql = select + conditions + (tail.isEmpty() ? "" : " " + tail);
+            return this;
+        }
+        
+        Object[] parameters() {
+            return params.toArray();
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,243 @@
+package model;
+
+import java.util.Date;
+
+/**
+ * Snapshot of the dashboard KPIs, computed together by DashboardController
+ */
+public class DashboardMetrics {
+    // Product metrics
+    private int totalProducts;
+    private int lowStockCount;
+    private int zeroStockCount;
+    private double inventoryValue;
+    private double minPrice;
+    private double maxPrice;
+    private double avgPrice;
+    private double medianPrice;
+    private int minStock;
+    private int maxStock;
+    private double avgStock;
+    private long totalStock;
+    
+    // Order metrics
+    private int totalOrders;
+    private int pendingOrders;
+    private double totalRevenue;
+    private double avgOrderValue;
+    private double maxOrderValue;
+    private double avgItemsPerOrder;
+    private int todayOrders;
+    private double todaySales;
+    private int weekOrders;
+    private double weekSales;
+    private int monthOrders;
+    private double monthSales;
+    
+    private Date computedOn;
+    
+    public DashboardMetrics() {
+        this.computedOn = new Date();
+    }
+    
+    // Getters and setters
+    public int getTotalProducts() {
+        return totalProducts;
+    }
+    
+    public void setTotalProducts(int totalProducts) {
+        this.totalProducts = totalProducts;
+    }
+    
+    public int getLowStockCount() {
+        return lowStockCount;
+    }
+    
+    public void setLowStockCount(int lowStockCount) {
+        this.lowStockCount = lowStockCount;
+    }
+    
+    public int getZeroStockCount() {
+        return zeroStockCount;
+    }
+    
+    public void setZeroStockCount(int zeroStockCount) {
+        this.zeroStockCount = zeroStockCount;
+    }
+    
+    public double getInventoryValue() {
+        return inventoryValue;
+    }
+    
+    public void setInventoryValue(double inventoryValue) {
+        this.inventoryValue = inventoryValue;
+    }
+    
+    public double getMinPrice() {
+        return minPrice;
+    }
+    
+    public void setMinPrice(double minPrice) {
+        this.minPrice = minPrice;
+    }
+    
+    public double getMaxPrice() {
+        return maxPrice;
+    }
+    
+    public void setMaxPrice(double maxPrice) {
+        this.maxPrice = maxPrice;
+    }
+    
+    public double getAvgPrice() {
+        return avgPrice;
+    }
+    
+    public void setAvgPrice(double avgPrice) {
+        this.avgPrice = avgPrice;
+    }
+    
+    public double getMedianPrice() {
+        return medianPrice;
+    }
+    
+    public void setMedianPrice(double medianPrice) {
+        this.medianPrice = medianPrice;
+    }
+    
+    public int getMinStock() {
+        return minStock;
+    }
+    
+    public void setMinStock(int minStock) {
+        this.minStock = minStock;
+    }
+    
+    public int getMaxStock() {
+        return maxStock;
+    }
+    
+    public void setMaxStock(int maxStock) {
+        this.maxStock = maxStock;
+    }
+    
+    public double getAvgStock() {
+        return avgStock;
+    }
+    
+    public void setAvgStock(double avgStock) {
+        this.avgStock = avgStock;
+    }
+    
+    public long getTotalStock() {
+        return totalStock;
+    }
+    
+    public void setTotalStock(long totalStock) {
+        this.totalStock = totalStock;
+    }
+    
+    public int getTotalOrders() {
+        return totalOrders;
+    }
+    
+    public void setTotalOrders(int totalOrders) {
+        this.totalOrders = totalOrders;
+    }
+    
+    public int getPendingOrders() {
+        return pendingOrders;
+    }
+    
+    public void setPendingOrders(int pendingOrders) {
+        this.pendingOrders = pendingOrders;
+    }
+    
+    public double getTotalRevenue() {
+        return totalRevenue;
+    }
+    
+    public void setTotalRevenue(double totalRevenue) {
+        this.totalRevenue = totalRevenue;
+    }
+    
+    public double getAvgOrderValue() {
+        return avgOrderValue;
+    }
+    
+    public void setAvgOrderValue(double avgOrderValue) {
+        this.avgOrderValue = avgOrderValue;
+    }
+    
+    public double getMaxOrderValue() {
+        return maxOrderValue;
+    }
+    
+    public void setMaxOrderValue(double maxOrderValue) {
+        this.maxOrderValue = maxOrderValue;
+    }
+    
+    public double getAvgItemsPerOrder() {
+        return avgItemsPerOrder;
+    }
+    
+    public void setAvgItemsPerOrder(double avgItemsPerOrder) {
+        this.avgItemsPerOrder = avgItemsPerOrder;
+    }
+    
+    public int getTodayOrders() {
+        return todayOrders;
+    }
+    
+    public void setTodayOrders(int todayOrders) {
+        this.todayOrders = todayOrders;
+    }
+    
+    public double getTodaySales() {
+        return todaySales;
+    }
+    
+    public void setTodaySales(double todaySales) {
+        this.todaySales = todaySales;
+    }
+    
+    public int getWeekOrders() {
+        return weekOrders;
+    }
+    
+    public void setWeekOrders(int weekOrders) {
+        this.weekOrders = weekOrders;
+    }
+    
+    public double getWeekSales() {
+        return weekSales;
+    }
+    
+    public void setWeekSales(double weekSales) {
+        this.weekSales = weekSales;
+    }
+    
+    public int getMonthOrders() {
+        return monthOrders;
+    }
+    
+    public void setMonthOrders(int monthOrders) {
+        this.monthOrders = monthOrders;
+    }
+    
+    public double getMonthSales() {
+        return monthSales;
+    }
+    
+    public void setMonthSales(double monthSales) {
+        this.monthSales = monthSales;
+    }
+    
+    public Date getComputedOn() {
+        return computedOn;
+    }
+    
+    public void setComputedOn(Date computedOn) {
+        this.computedOn = computedOn;
+    }
+}
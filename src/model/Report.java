@@ -8,6 +8,7 @@ public class Report {
     private Date generatedOn;
     private String parameters;
     private String filePath;
+    private String fingerprint;
     
     public Report() {
         this.generatedOn = new Date();
@@ -61,4 +62,12 @@ public class Report {
     public void setFilePath(String filePath) {
         this.filePath = filePath;
     }
+    
+    public String getFingerprint() {
+        return fingerprint;
+    }
+    
+    public void setFingerprint(String fingerprint) {
+        this.fingerprint = fingerprint;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,149 @@
+package model;
+
+import java.util.Date;
+
+public class ReportJob {
+    public static final String QUEUED = "queued";
+    public static final String RUNNING = "running";
+    public static final String DONE = "done";
+    public static final String FAILED = "failed";
+    public static final String CANCELLED = "cancelled";
+
+    private int id;
+    private String reportType;
+    private String format;
+    private String parameters;
+    private String status;
+    private long rowsDone;
+    private long rowsTotal = -1;
+    private Integer reportId;
+    private String error;
+    private Date queuedOn;
+    private Date startedOn;
+    private Date finishedOn;
+    private String owner;
+
+    public ReportJob() {
+        this.status = QUEUED;
+        this.queuedOn = new Date();
+    }
+
+    public ReportJob(String reportType, String format, String parameters) {
+        this();
+        this.reportType = reportType;
+        this.format = format;
+        this.parameters = parameters;
+    }
+
+    /**
+     * Whether the job is still waiting or running
+     */
+    public boolean isActive() {
+        return QUEUED.equals(status) || RUNNING.equals(status);
+    }
+
+    // Getters and setters
+    public int getId() {
+        return id;
+    }
+
+    public void setId(int id) {
+        this.id = id;
+    }
+
+    public String getReportType() {
+        return reportType;
+    }
+
+    public void setReportType(String reportType) {
+        this.reportType = reportType;
+    }
+
+    public String getFormat() {
+        return format;
+    }
+
+    public void setFormat(String format) {
+        this.format = format;
+    }
+
+    public String getParameters() {
+        return parameters;
+    }
+
+    public void setParameters(String parameters) {
+        this.parameters = parameters;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    public long getRowsDone() {
+        return rowsDone;
+    }
+
+    public void setRowsDone(long rowsDone) {
+        this.rowsDone = rowsDone;
+    }
+
+    public long getRowsTotal() {
+        return rowsTotal;
+    }
+
+    public void setRowsTotal(long rowsTotal) {
+        this.rowsTotal = rowsTotal;
+    }
+
+    public Integer getReportId() {
+        return reportId;
+    }
+
+    public void setReportId(Integer reportId) {
+        this.reportId = reportId;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+
+    public Date getQueuedOn() {
+        return queuedOn;
+    }
+
+    public void setQueuedOn(Date queuedOn) {
+        this.queuedOn = queuedOn;
+    }
+
+    public Date getStartedOn() {
+        return startedOn;
+    }
+
+    public void setStartedOn(Date startedOn) {
+        this.startedOn = startedOn;
+    }
+
+    public Date getFinishedOn() {
+        return finishedOn;
+    }
+
+    public void setFinishedOn(Date finishedOn) {
+        this.finishedOn = finishedOn;
+    }
+
+    public String getOwner() {
+        return owner;
+    }
+
+    public void setOwner(String owner) {
+        this.owner = owner;
+    }
+}
@@ -0,0 +1,276 @@
+package model;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Filters of a report: an inclusive date range, a category, supplier, customer
+ * and order status, and the number of rows of a top-N report. Any of them may
+ * be null for no filter.
+ *
+ * Stored in Report.parameters as a flat JSON object holding only the filters
+ * that are set, so a report can be generated again with the same rows.
+ */
+public class ReportParameters {
+    public static final int DEFAULT_TOP_N = 10;
+
+    private LocalDate fromDate;
+    private LocalDate toDate;
+    private Integer categoryId;
+    private Integer supplierId;
+    private Integer customerId;
+    private String status;
+    private Integer topN;
+
+    /**
+     * Whether any filter applies to orders rather than products
+     */
+    public boolean hasOrderFilters() {
+        return fromDate != null || toDate != null || customerId != null || status != null;
+    }
+
+    /**
+     * The number of rows of a top-N report, {@link #DEFAULT_TOP_N} when not set
+     */
+    public int getTopNOrDefault() {
+        return topN != null && topN > 0 ? topN : DEFAULT_TOP_N;
+    }
+
+    /**
+     * JSON form of the filters that are set, e.g. {"fromDate":"2025-01-01","status":"Shipped"}
+     */
+    public String toJson() {
+        Map<String, Object> values = new LinkedHashMap<>();
+        values.put("fromDate", fromDate != null ? fromDate.toString() : null);
+        values.put("toDate", toDate != null ? toDate.toString() : null);
+        values.put("categoryId", categoryId);
+        values.put("supplierId", supplierId);
+        values.put("customerId", customerId);
+        values.put("status", status);
+        values.put("topN", topN);
+
+        StringBuilder json = new StringBuilder("{");
+        for (Map.Entry<String, Object> entry : values.entrySet()) {
+            if (entry.getValue() == null) {
+                continue;
+            }
+            if (json.length() > 1) {
+                json.append(',');
+            }
+            json.append('"').append(entry.getKey()).append("\":");
+            if (entry.getValue() instanceof String) {
+                appendQuoted(json, (String) entry.getValue());
+            } else {
+                json.append(entry.getValue());
+            }
+        }
+        return json.append('}').toString();
+    }
+
+    /**
+     * Read filters written by {@link #toJson()}; unknown keys are ignored and
+     * unreadable text gives no filters
+     * @param json The JSON text, may be null or empty
+     */
+    public static ReportParameters fromJson(String json) {
+        ReportParameters parameters = new ReportParameters();
+        if (json == null || json.trim().isEmpty()) {
+            return parameters;
+        }
+
+        try {
+            Map<String, String> values = new JsonReader(json).readObject();
+            parameters.fromDate = parseDate(values.get("fromDate"));
+            parameters.toDate = parseDate(values.get("toDate"));
+            parameters.categoryId = parseInt(values.get("categoryId"));
+            parameters.supplierId = parseInt(values.get("supplierId"));
+            parameters.customerId = parseInt(values.get("customerId"));
+            parameters.status = values.get("status");
+            parameters.topN = parseInt(values.get("topN"));
+        } catch (IllegalArgumentException | IndexOutOfBoundsException | DateTimeParseException e) {
+            System.err.println("Error reading report parameters " + json + ": " + e.getMessage());
+            return new ReportParameters();
+        }
+        return parameters;
+    }
+
+    private static LocalDate parseDate(String text) {
+        return text != null ? LocalDate.parse(text) : null;
+    }
+
+    private static Integer parseInt(String text) {
+        return text != null ? Integer.valueOf(text) : null;
+    }
+
+    private static void appendQuoted(StringBuilder json, String value) {
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                json.append('\\').append(c);
+            } else if (c < 0x20) {
+                json.append(String.format("\\u%04x", (int) c));
+            } else {
+                json.append(c);
+            }
+        }
+        json.append('"');
+    }
+
+    /**
+     * Reader for a flat JSON object of string, number and null values
+     */
+    private static class JsonReader {
+        private final String text;
+        private int position;
+
+        JsonReader(String text) {
+            this.text = text;
+        }
+
+        Map<String, String> readObject() {
+            Map<String, String> values = new LinkedHashMap<>();
+            expect('{');
+            if (peek() == '}') {
+                position++;
+                return values;
+            }
+            while (true) {
+                String key = readString();
+                expect(':');
+                values.put(key, readValue());
+                char next = next();
+                if (next == '}') {
+                    return values;
+                }
+                if (next != ',') {
+                    throw new IllegalArgumentException("Expected ',' or '}' at " + (position - 1));
+                }
+            }
+        }
+
+        private String readValue() {
+            char c = peek();
+            if (c == '"') {
+                return readString();
+            }
+            int start = position;
+            while (position < text.length() && ",}".indexOf(text.charAt(position)) < 0
+                    && !Character.isWhitespace(text.charAt(position))) {
+                position++;
+            }
+            String literal = text.substring(start, position);
+            return "null".equals(literal) ? null : literal;
+        }
+
+        private String readString() {
+            expect('"');
+            StringBuilder value = new StringBuilder();
+            while (true) {
+                if (position >= text.length()) {
+                    throw new IllegalArgumentException("Unterminated string");
+                }
+                char c = text.charAt(position++);
+                if (c == '"') {
+                    return value.toString();
+                }
+                if (c == '\\') {
+                    char escaped = text.charAt(position++);
+                    switch (escaped) {
+                        case 'n': value.append('\n'); break;
+                        case 't': value.append('\t'); break;
+                        case 'r': value.append('\r'); break;
+                        case 'u':
+                            value.append((char) Integer.parseInt(text.substring(position, position + 4), 16));
+                            position += 4;
+                            break;
+                        default: value.append(escaped);
+                    }
+                } else {
+                    value.append(c);
+                }
+            }
+        }
+
+        private void expect(char expected) {
+            if (next() != expected) {
+                throw new IllegalArgumentException("Expected '" + expected + "' at " + (position - 1));
+            }
+        }
+
+        private char next() {
+            char c = peek();
+            position++;
+            return c;
+        }
+
+        private char peek() {
+            while (position < text.length() && Character.isWhitespace(text.charAt(position))) {
+                position++;
+            }
+            if (position >= text.length()) {
+                throw new IllegalArgumentException("Unexpected end of text");
+            }
+            return text.charAt(position);
+        }
+    }
+
+    // Getters and setters
+    public LocalDate getFromDate() {
+        return fromDate;
+    }
+
+    public void setFromDate(LocalDate fromDate) {
+        this.fromDate = fromDate;
+    }
+
+    public LocalDate getToDate() {
+        return toDate;
+    }
+
+    public void setToDate(LocalDate toDate) {
+        this.toDate = toDate;
+    }
+
+    public Integer getCategoryId() {
+        return categoryId;
+    }
+
+    public void setCategoryId(Integer categoryId) {
+        this.categoryId = categoryId;
+    }
+
+    public Integer getSupplierId() {
+        return supplierId;
+    }
+
+    public void setSupplierId(Integer supplierId) {
+        this.supplierId = supplierId;
+    }
+
+    public Integer getCustomerId() {
+        return customerId;
+    }
+
+    public void setCustomerId(Integer customerId) {
+        this.customerId = customerId;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    public Integer getTopN() {
+        return topN;
+    }
+
+    public void setTopN(Integer topN) {
+        this.topN = topN;
+    }
+}
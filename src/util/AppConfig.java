@@ -0,0 +1,87 @@
+package util;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.Properties;
+
+/**
+ * Read-only access to the settings stored in config.properties
+ */
+public class AppConfig {
+    private static final String CONFIG_FILE = "config.properties";
+    private static Properties properties;
+
+    /**
+     * Get a setting as a string
+     * @param key The property key
+     * @param defaultValue Value returned when the key is missing or blank
+     * @return The configured value or the default
+     */
+    public static String getString(String key, String defaultValue) {
+        String value = load().getProperty(key);
+        return (value == null || value.trim().isEmpty()) ? defaultValue : value.trim();
+    }
+
+    /**
+     * Get a setting as an int, falling back to the default when it is not a number
+     */
+    public static int getInt(String key, int defaultValue) {
+        String value = getString(key, null);
+        if (value == null) {
+            return defaultValue;
+        }
+
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            System.err.println("Invalid number for " + key + ": " + value);
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Get a setting as a boolean
+     */
+    public static boolean getBoolean(String key, boolean defaultValue) {
+        String value = getString(key, null);
+        return value == null ? defaultValue : Boolean.parseBoolean(value);
+    }
+
+    /**
+     * Get all settings whose key starts with the given prefix, with the prefix removed
+     */
+    public static Properties getSection(String prefix) {
+        Properties section = new Properties();
+        Properties props = load();
+        for (String key : props.stringPropertyNames()) {
+            if (key.startsWith(prefix)) {
+                section.setProperty(key.substring(prefix.length()), props.getProperty(key).trim());
+            }
+        }
+        return section;
+    }
+
+    /**
+     * Forget the cached settings so the next lookup re-reads the file
+     */
+    public static synchronized void reload() {
+        properties = null;
+    }
+
+    private static synchronized Properties load() {
+        if (properties == null) {
+            properties = new Properties();
+            File configFile = new File(CONFIG_FILE);
+
+            if (configFile.exists()) {
+                try (FileInputStream fis = new FileInputStream(configFile)) {
+                    properties.load(fis);
+                } catch (IOException e) {
+                    System.err.println("Error reading " + CONFIG_FILE + ": " + e.getMessage());
+                }
+            }
+        }
+        return properties;
+    }
+}
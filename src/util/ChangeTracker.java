@@ -0,0 +1,118 @@
+package util;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Per-table change counters, so views can tell whether the data behind them
+ * changed since they last loaded it.
+ *
+ * DataUtil reports every successful write: the target table of INSERT, UPDATE
+ * and DELETE statements is bumped, anything else (DDL, raw SQL) bumps every
+ * table. Writes made inside a transaction are held back until it ends, so a
+ * reader never records a version whose changes it cannot see yet. Rows written
+ * by triggers or cascades are not seen: a reader of StockMovement, for example,
+ * also declares Product, the table its trigger fires on.
+ *
+ * Versions only grow, so {@link #version(String...)} is the sum of the counters
+ * of the given tables and changes whenever any of them does.
+ */
+public class ChangeTracker {
+    private static final int MAX_CACHED_STATEMENTS = 2048;
+    private static final Pattern TARGET_TABLE = Pattern.compile(
+            "^\\s*(?:(?:INSERT|REPLACE)(?:\\s+OR\\s+\\w+)?\\s+INTO|UPDATE(?:\\s+OR\\s+\\w+)?|DELETE\\s+FROM)" +
+            "\\s+[\"`\\[]?(\\w+)", Pattern.CASE_INSENSITIVE);
+
+    // Stands for "every table" in the pending set and the statement cache
+    private static final String ALL_TABLES = "*";
+
+    private static final ConcurrentMap<String, AtomicLong> VERSIONS = new ConcurrentHashMap<>();
+    private static final AtomicLong ALL = new AtomicLong();
+    private static final ConcurrentMap<String, String> TARGETS = new ConcurrentHashMap<>();
+
+    // Tables written by the current thread's open transaction
+    private static final ThreadLocal<Set<String>> PENDING = ThreadLocal.withInitial(HashSet::new);
+
+    /**
+     * Record a write to a table
+     */
+    public static void changed(String table) {
+        record(key(table));
+    }
+
+    /**
+     * Record a write that may have touched any table, e.g. a script import
+     */
+    public static void changedAll() {
+        record(ALL_TABLES);
+    }
+
+    /**
+     * Record a write by its SQL text: the target table of an INSERT, UPDATE or
+     * DELETE, every table for anything else
+     */
+    public static void changedBy(String sql) {
+        String target = TARGETS.get(sql);
+        if (target == null) {
+            Matcher matcher = TARGET_TABLE.matcher(sql);
+            target = matcher.find() ? key(matcher.group(1)) : ALL_TABLES;
+            if (TARGETS.size() < MAX_CACHED_STATEMENTS) {
+                TARGETS.put(sql, target);
+            }
+        }
+        record(target);
+    }
+
+    /**
+     * Combined version of some tables; equal values mean none of them changed
+     * in between
+     */
+    public static long version(String... tables) {
+        long version = ALL.get();
+        for (String table : tables) {
+            AtomicLong counter = VERSIONS.get(key(table));
+            if (counter != null) {
+                version += counter.get();
+            }
+        }
+        return version;
+    }
+
+    /**
+     * Publish the writes of the current thread's transaction once it has ended.
+     * Writes of a rolled back transaction are published too, which at worst
+     * causes one needless reload.
+     */
+    static void transactionEnded() {
+        Set<String> pending = PENDING.get();
+        for (String table : pending) {
+            bump(table);
+        }
+        pending.clear();
+    }
+
+    private static void record(String table) {
+        if (DataUtil.isInTransaction()) {
+            PENDING.get().add(table);
+        } else {
+            bump(table);
+        }
+    }
+
+    private static void bump(String table) {
+        if (ALL_TABLES.equals(table)) {
+            ALL.incrementAndGet();
+        } else {
+            VERSIONS.computeIfAbsent(table, k -> new AtomicLong()).incrementAndGet();
+        }
+    }
+
+    private static String key(String table) {
+        return table.replaceAll("[\"`\\[\\]]", "").toLowerCase();
+    }
+}
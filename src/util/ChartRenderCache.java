@@ -0,0 +1,233 @@
+package util;
+
+import java.awt.image.BufferedImage;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.swing.UIManager;
+import org.jfree.chart.ChartRenderingInfo;
+import org.jfree.chart.JFreeChart;
+import org.jfree.chart.plot.CategoryPlot;
+import org.jfree.chart.plot.PiePlot;
+import org.jfree.chart.plot.Plot;
+import org.jfree.chart.plot.PlotRenderingInfo;
+import org.jfree.chart.plot.XYPlot;
+import org.jfree.chart.title.TextTitle;
+import org.jfree.chart.title.Title;
+import org.jfree.data.category.CategoryDataset;
+import org.jfree.data.general.PieDataset;
+import org.jfree.data.xy.XYDataset;
+import org.jfree.data.xy.XYZDataset;
+
+/**
+ * Least recently used cache of rendered chart images.
+ *
+ * A render is keyed by a fingerprint of the chart (plot type, title, text
+ * subtitles and every dataset value), the image size, the look and feel and the locale, so a chart
+ * rebuilt from unchanged data is drawn once per size and then copied. The cache
+ * holds at most "chart.renderCacheMB" (default 32) megabytes of pixels. Each
+ * render keeps the rendering info of its drawing, so tooltips still work on a
+ * copied image.
+ */
+public class ChartRenderCache {
+
+    private static final Map<String, Render> CACHE = new LinkedHashMap<>(16, 0.75f, true);
+    private static long cachedBytes;
+
+    /**
+     * Get the render of a chart at the given size, drawing it on a miss
+     */
+    public static Render get(JFreeChart chart, int width, int height) {
+        String key = key(chart, width, height);
+        synchronized (ChartRenderCache.class) {
+            Render render = CACHE.get(key);
+            if (render != null) {
+                return render;
+            }
+        }
+
+        // Drawn outside the lock so a slow chart does not hold up other lookups
+        ChartRenderingInfo info = new ChartRenderingInfo();
+        Render render = new Render(chart.createBufferedImage(width, height, info), info);
+
+        synchronized (ChartRenderCache.class) {
+            Render previous = CACHE.put(key, render);
+            if (previous != null) {
+                cachedBytes -= previous.bytes();
+            }
+            cachedBytes += render.bytes();
+            evict(key);
+        }
+        return render;
+    }
+
+    /**
+     * Get the image of a chart at the given size, e.g. to embed it in a report
+     */
+    public static BufferedImage render(JFreeChart chart, int width, int height) {
+        return get(chart, width, height).getImage();
+    }
+
+    /**
+     * Drop every cached render
+     */
+    public static synchronized void clear() {
+        CACHE.clear();
+        cachedBytes = 0;
+    }
+
+    /**
+     * Hash of what a chart shows: plot type, title and the keys and values of
+     * all its datasets
+     */
+    public static long fingerprint(JFreeChart chart) {
+        Fingerprint hash = new Fingerprint();
+        Plot plot = chart.getPlot();
+        hash.add(plot.getClass().getName());
+        hash.add(chart.getTitle() != null ? chart.getTitle().getText() : null);
+
+        // Text subtitles carry values too, e.g. the percentiles under a histogram
+        for (int i = 0; i < chart.getSubtitleCount(); i++) {
+            Title subtitle = chart.getSubtitle(i);
+            hash.add(subtitle instanceof TextTitle ? ((TextTitle) subtitle).getText()
+                    : subtitle.getClass().getName());
+        }
+
+        if (plot instanceof CategoryPlot) {
+            CategoryPlot categoryPlot = (CategoryPlot) plot;
+            for (int i = 0; i < categoryPlot.getDatasetCount(); i++) {
+                addCategoryDataset(hash, categoryPlot.getDataset(i));
+            }
+        } else if (plot instanceof XYPlot) {
+            XYPlot xyPlot = (XYPlot) plot;
+            for (int i = 0; i < xyPlot.getDatasetCount(); i++) {
+                addXYDataset(hash, xyPlot.getDataset(i));
+            }
+        } else if (plot instanceof PiePlot) {
+            addPieDataset(hash, ((PiePlot) plot).getDataset());
+        } else {
+            // Unknown plot type: never matches another chart
+            hash.add(System.identityHashCode(chart));
+        }
+        return hash.value;
+    }
+
+    private static String key(JFreeChart chart, int width, int height) {
+        return Long.toHexString(fingerprint(chart)) + ":" + width + "x" + height + ":"
+                + UIManager.getLookAndFeel().getClass().getName() + ":" + LocaleManager.getCurrentLocale();
+    }
+
+    private static void evict(String keep) {
+        long maxBytes = AppConfig.getInt("chart.renderCacheMB", 32) * 1024L * 1024L;
+        Iterator<Map.Entry<String, Render>> eldest = CACHE.entrySet().iterator();
+        while (cachedBytes > maxBytes && eldest.hasNext()) {
+            Map.Entry<String, Render> entry = eldest.next();
+            if (!entry.getKey().equals(keep)) {
+                cachedBytes -= entry.getValue().bytes();
+                eldest.remove();
+            }
+        }
+    }
+
+    private static void addCategoryDataset(Fingerprint hash, CategoryDataset dataset) {
+        if (dataset == null) {
+            return;
+        }
+        List<?> rows = dataset.getRowKeys();
+        List<?> columns = dataset.getColumnKeys();
+        hash.add(rows.hashCode());
+        hash.add(columns.hashCode());
+        for (int row = 0; row < rows.size(); row++) {
+            for (int column = 0; column < columns.size(); column++) {
+                hash.add(dataset.getValue(row, column));
+            }
+        }
+    }
+
+    private static void addXYDataset(Fingerprint hash, XYDataset dataset) {
+        if (dataset == null) {
+            return;
+        }
+        for (int series = 0; series < dataset.getSeriesCount(); series++) {
+            hash.add(dataset.getSeriesKey(series));
+            int items = dataset.getItemCount(series);
+            hash.add(items);
+            for (int item = 0; item < items; item++) {
+                hash.add(dataset.getXValue(series, item));
+                hash.add(dataset.getYValue(series, item));
+                if (dataset instanceof XYZDataset) {
+                    hash.add(((XYZDataset) dataset).getZValue(series, item));
+                }
+            }
+        }
+    }
+
+    private static void addPieDataset(Fingerprint hash, PieDataset dataset) {
+        if (dataset == null) {
+            return;
+        }
+        for (int i = 0; i < dataset.getItemCount(); i++) {
+            hash.add(dataset.getKey(i));
+            hash.add(dataset.getValue(i));
+        }
+    }
+
+    /**
+     * 64-bit FNV-1a style hash built up value by value
+     */
+    private static class Fingerprint {
+        long value = 0xcbf29ce484222325L;
+
+        void add(long bits) {
+            value = (value ^ bits) * 0x100000001b3L;
+        }
+
+        void add(double number) {
+            add(Double.doubleToLongBits(number));
+        }
+
+        void add(Object object) {
+            if (object instanceof Number) {
+                add(((Number) object).doubleValue());
+            } else {
+                add(object == null ? 0L : object.hashCode());
+            }
+        }
+    }
+
+    /**
+     * A rendered chart image with the rendering info of its drawing
+     */
+    public static class Render {
+        private final BufferedImage image;
+        private final ChartRenderingInfo info;
+
+        Render(BufferedImage image, ChartRenderingInfo info) {
+            this.image = image;
+            this.info = info;
+        }
+
+        public BufferedImage getImage() {
+            return image;
+        }
+
+        /**
+         * Copy the chart area, plot areas and entities of this render into
+         * another rendering info, e.g. the one a ChartPanel reads tooltips from
+         */
+        public void copyInfoTo(ChartRenderingInfo target) {
+            target.clear();
+            target.setChartArea(info.getChartArea());
+            target.getEntityCollection().addAll(info.getEntityCollection());
+
+            PlotRenderingInfo plotInfo = info.getPlotInfo();
+            target.getPlotInfo().setPlotArea(plotInfo.getPlotArea());
+            target.getPlotInfo().setDataArea(plotInfo.getDataArea());
+        }
+
+        long bytes() {
+            return 4L * image.getWidth() * image.getHeight();
+        }
+    }
+}
@@ -4,31 +4,67 @@ import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
 import java.sql.Statement;
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
-import java.io.IOException;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 
+/**
+ * Connection manager for the SQLite database.
+ *
+ * The database runs in WAL mode with a single writer connection, returned by
+ * {@link #getConnection()}, and a small pool of read-only connections handed out
+ * by {@link #acquireReadConnection()}. Readers see the last committed snapshot and
+ * never wait for the writer, so long report queries do not block order entry.
+ */
 public class DBConnection {
     private static final String DB_URL = "jdbc:sqlite:stock-manager.db";
+    private static final int BUSY_TIMEOUT_MS = 5000;
+    
     private static Connection connection = null;
+    private static DBTuningProfile profile;
+    private static List<Connection> readConnections = new ArrayList<>();
+    private static BlockingQueue<Connection> idleReadConnections;
+    private static Map<Connection, StatementCache> statementCaches = new IdentityHashMap<>();
     
-    public static Connection getConnection() {
+    /**
+     * Get the writer connection, opening the database on first use
+     */
+    public static synchronized Connection getConnection() {
         if (connection == null) {
             try {
                 // Load the SQLite JDBC driver
                 Class.forName("org.sqlite.JDBC");
-                connection = DriverManager.getConnection(DB_URL);
+                
+                // Take the write lock when a transaction begins, so SQLITE_BUSY shows
+                // up at BEGIN, where DataUtil.inTransaction can safely retry it
+                Properties props = new Properties();
+                props.setProperty("transaction_mode", "IMMEDIATE");
+                connection = DriverManager.getConnection(DB_URL, props);
+                profile = DBTuningProfile.load();
                 
                 // Set pragmas for better performance
                 Statement stmt = connection.createStatement();
+                stmt.execute("PRAGMA journal_mode = WAL");
                 stmt.execute("PRAGMA foreign_keys = ON");
+                stmt.execute("PRAGMA busy_timeout = " + BUSY_TIMEOUT_MS);
                 stmt.close();
+                profile.apply(connection);
                 
-                // Create tables if they don't exist
-                initializeDatabase();
+                // Create or upgrade the schema; a no-op when it is up to date
+                if (!SchemaMigrator.migrate(connection)) {
+                    // Do not run against a half-migrated schema
+                    System.err.println("Database schema migration failed, closing the connection.");
+                    connection.close();
+                    connection = null;
+                    return null;
+                }
                 
-                System.out.println("Database connection established.");
+                System.out.println("Database connection established (profile: " + profile + ").");
             } catch (ClassNotFoundException e) {
                 System.err.println("SQLite JDBC driver not found: " + e.getMessage());
             } catch (SQLException e) {
@@ -38,8 +74,100 @@ public class DBConnection {
         return connection;
     }
     
-    public static void closeConnection() {
+    /**
+     * Borrow a read-only connection from the pool, waiting if all are in use.
+     * Every call must be paired with {@link #releaseReadConnection(Connection)}.
+     * Falls back to the writer connection when the pool is disabled
+     * ("db.readPoolSize=0") or cannot be opened; the writer is shared, so callers
+     * must then hold the write lock while they use it, as DataUtil does.
+     * @throws SQLException if the thread is interrupted while waiting
+     */
+    public static Connection acquireReadConnection() throws SQLException {
+        BlockingQueue<Connection> idle = getReadPool();
+        if (idle == null) {
+            return getConnection();
+        }
+        
+        try {
+            return idle.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a read connection", e);
+        }
+    }
+    
+    /**
+     * Return a connection obtained from {@link #acquireReadConnection()}
+     */
+    public static void releaseReadConnection(Connection conn) {
+        BlockingQueue<Connection> idle;
+        synchronized (DBConnection.class) {
+            // Connections from a pool that has since been closed are simply dropped
+            if (conn == null || conn == connection || !readConnections.contains(conn)) {
+                return;
+            }
+            idle = idleReadConnections;
+        }
+        idle.offer(conn);
+    }
+    
+    /**
+     * Get the prepared-statement cache of a connection opened by this class
+     */
+    public static synchronized StatementCache getStatementCache(Connection conn) {
+        StatementCache cache = statementCaches.get(conn);
+        if (cache == null) {
+            cache = new StatementCache(conn, AppConfig.getInt("db.statementCacheSize", 64));
+            statementCaches.put(conn, cache);
+        }
+        return cache;
+    }
+    
+    private static synchronized BlockingQueue<Connection> getReadPool() {
+        if (idleReadConnections == null) {
+            // Make sure the database exists and the schema is in place first
+            if (getConnection() == null) {
+                return null;
+            }
+            
+            int poolSize = AppConfig.getInt("db.readPoolSize", 3);
+            if (poolSize <= 0) {
+                return null;
+            }
+            
+            BlockingQueue<Connection> idle = new ArrayBlockingQueue<>(poolSize);
+            try {
+                for (int i = 0; i < poolSize; i++) {
+                    Connection readConn = DriverManager.getConnection(DB_URL);
+                    try (Statement stmt = readConn.createStatement()) {
+                        stmt.execute("PRAGMA query_only = ON");
+                        stmt.execute("PRAGMA busy_timeout = " + BUSY_TIMEOUT_MS);
+                    }
+                    profile.apply(readConn);
+                    
+                    readConnections.add(readConn);
+                    idle.add(readConn);
+                }
+            } catch (SQLException e) {
+                System.err.println("Error opening read connections: " + e.getMessage());
+                closeReadConnections();
+                return null;
+            }
+            idleReadConnections = idle;
+        }
+        return idleReadConnections;
+    }
+    
+    public static synchronized void closeConnection() {
+        String statsFile = AppConfig.getString("db.queryStatsFile", null);
+        if (statsFile != null) {
+            QueryStats.dump(new File(statsFile), AppConfig.getInt("db.queryStatsTop", 50));
+        }
+        
+        closeReadConnections();
+        
         if (connection != null) {
+            closeStatementCache(connection);
             try {
                 connection.close();
                 connection = null;
@@ -50,53 +178,23 @@ public class DBConnection {
         }
     }
     
-    private static void initializeDatabase() {
-        try {
-            String rootPath = new File(".").getCanonicalPath();
-            String schemaPath = rootPath + "/resources/schema.sql";
-            System.out.println("Loading schema from: " + schemaPath);
-            
-            // Read the file and execute each statement individually
-            StringBuilder currentStatement = new StringBuilder();
-            try (BufferedReader reader = new BufferedReader(new FileReader(schemaPath))) {
-                String line;
-                while ((line = reader.readLine()) != null) {
-                    // Skip comments
-                    if (line.trim().startsWith("--")) {
-                        continue;
-                    }
-                    
-                    // Add the line to the current statement
-                    currentStatement.append(line).append(" ");
-                    
-                    // If the line has a semicolon, execute the statement
-                    if (line.trim().endsWith(";")) {
-                        executeStatement(currentStatement.toString());
-                        currentStatement = new StringBuilder();
-                    }
-                }
+    private static void closeReadConnections() {
+        for (Connection readConn : readConnections) {
+            closeStatementCache(readConn);
+            try {
+                readConn.close();
+            } catch (SQLException e) {
+                System.err.println("Error closing read connection: " + e.getMessage());
             }
-            
-            System.out.println("Database schema initialized successfully.");
-        } catch (IOException e) {
-            System.err.println("Error reading schema.sql: " + e.getMessage());
-            e.printStackTrace();
         }
+        readConnections.clear();
+        idleReadConnections = null;
     }
     
-    private static void executeStatement(String sql) {
-        if (sql.trim().isEmpty()) {
-            return;
-        }
-        
-        Connection conn = getConnection();
-        try (Statement stmt = conn.createStatement()) {
-            System.out.println("Executing SQL: " + sql.trim());
-            stmt.execute(sql);
-        } catch (SQLException e) {
-            System.err.println("Error executing statement: " + sql.trim());
-            System.err.println("Error message: " + e.getMessage());
-            // Continue with other statements
+    private static void closeStatementCache(Connection conn) {
+        StatementCache cache = statementCaches.remove(conn);
+        if (cache != null) {
+            cache.close();
         }
     }
 }
\ No newline at end of file
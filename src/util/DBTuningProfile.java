@@ -0,0 +1,107 @@
+package util;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Named set of SQLite pragmas applied to every pooled connection.
+ *
+ * The active profile is chosen with "db.profile" in config.properties. Any value
+ * of a built-in profile can be overridden, or a new profile defined, with keys of
+ * the form "db.profile.&lt;name&gt;.&lt;pragma&gt;", e.g. "db.profile.balanced.cache_size=-32000".
+ */
+public class DBTuningProfile {
+    public static final String DEFAULT_PROFILE = "balanced";
+
+    private static final String[] PRAGMAS = {"cache_size", "mmap_size", "synchronous", "temp_store"};
+
+    private final String name;
+    private final Map<String, String> pragmas = new LinkedHashMap<>();
+
+    private DBTuningProfile(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Build the profile selected in config.properties
+     */
+    public static DBTuningProfile load() {
+        String name = AppConfig.getString("db.profile", DEFAULT_PROFILE);
+        DBTuningProfile profile = builtIn(name);
+
+        Properties overrides = AppConfig.getSection("db.profile." + name + ".");
+        for (String pragma : PRAGMAS) {
+            String value = overrides.getProperty(pragma);
+            if (value != null) {
+                profile.pragmas.put(pragma, value);
+            }
+        }
+
+        return profile;
+    }
+
+    /**
+     * Get one of the built-in profiles; unknown names start from the default one
+     */
+    private static DBTuningProfile builtIn(String name) {
+        DBTuningProfile profile = new DBTuningProfile(name);
+
+        switch (name) {
+            case "safe":
+                // Durable on power loss, smallest footprint
+                profile.set("-8000", "0", "FULL", "DEFAULT");
+                break;
+
+            case "low-memory":
+                profile.set("-2000", "0", "NORMAL", "FILE");
+                break;
+
+            case "fast":
+                // Large page cache and memory-mapped reads for big catalogs
+                profile.set("-65536", "268435456", "NORMAL", "MEMORY");
+                break;
+
+            case DEFAULT_PROFILE:
+                profile.set("-16000", "67108864", "NORMAL", "MEMORY");
+                break;
+
+            default:
+                System.err.println("Unknown database profile '" + name + "', using " + DEFAULT_PROFILE + " values");
+                profile.set("-16000", "67108864", "NORMAL", "MEMORY");
+                break;
+        }
+
+        return profile;
+    }
+
+    private void set(String cacheSize, String mmapSize, String synchronous, String tempStore) {
+        pragmas.put("cache_size", cacheSize);
+        pragmas.put("mmap_size", mmapSize);
+        pragmas.put("synchronous", synchronous);
+        pragmas.put("temp_store", tempStore);
+    }
+
+    /**
+     * Apply the profile's pragmas to a connection
+     */
+    public void apply(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            for (Map.Entry<String, String> pragma : pragmas.entrySet()) {
+                stmt.execute("PRAGMA " + pragma.getKey() + " = " + pragma.getValue());
+            }
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String toString() {
+        return name + " " + pragmas;
+    }
+}
@@ -1,14 +1,26 @@
 package util;
 
-import java.lang.reflect.Field;
+import java.io.IOException;
 import java.sql.*;
 import java.util.*;
 import java.util.Date;
+import java.util.concurrent.locks.ReentrantLock;
 import java.text.SimpleDateFormat;
 
 public class DataUtil {
     
     private static final SimpleDateFormat DATE_FORMAT = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+    private static final int DEFAULT_FETCH_SIZE = 500;
+    
+    // SQLite result codes for a database held by another connection
+    private static final int SQLITE_BUSY = 5;
+    private static final int SQLITE_LOCKED = 6;
+    
+    // Serializes use of the single writer connection; held for a whole transaction
+    private static final ReentrantLock WRITE_LOCK = new ReentrantLock();
+    
+    // Nesting depth of the current thread's transaction; 0 when none is open
+    private static final ThreadLocal<Integer> TRANSACTION_DEPTH = ThreadLocal.withInitial(() -> 0);
     
     /**
      * Generic method to insert an object into the database
@@ -18,52 +30,48 @@ public class DataUtil {
      * @return The generated ID of the inserted record, or -1 if failed
      */
     public static int insert(String tableName, Object object, String... excludeFields) {
-        Set<String> excluded = new HashSet<>(Arrays.asList(excludeFields));
-        
         try {
-            Class<?> clazz = object.getClass();
-            Field[] fields = clazz.getDeclaredFields();
+            EntityMetadata.Binding binding = EntityMetadata.forClass(object.getClass())
+                    .insertBinding(tableName, excludeFields);
             
-            // Build column and value lists for SQL
-            StringBuilder columns = new StringBuilder();
-            StringBuilder placeholders = new StringBuilder();
-            List<Object> values = new ArrayList<>();
+            // Skip null values so column defaults apply
+            Object[] fieldValues = binding.values(object);
+            String sql = binding.sql(binding.presentMask(fieldValues));
+            List<Object> values = binding.parameters(object, fieldValues);
             
-            for (Field field : fields) {
-                field.setAccessible(true);
-                String fieldName = field.getName();
+            // Execute the insert
+            Connection conn = DBConnection.getConnection();
+            StatementCache cache = DBConnection.getStatementCache(conn);
+            WRITE_LOCK.lock();
+            long start = System.nanoTime();
+            int affectedRows = 0;
+            PreparedStatement stmt = null;
+            boolean reusable = false;
+            try {
+                stmt = cache.acquire(sql, true);
+                setParameters(stmt, values);
                 
-                // Skip excluded fields and null values
-                if (!excluded.contains(fieldName) && field.get(object) != null) {
-                    if (columns.length() > 0) {
-                        columns.append(", ");
-                        placeholders.append(", ");
+                affectedRows = stmt.executeUpdate();
+                int generatedId = -1;
+                
+                if (affectedRows > 0) {
+                    ChangeTracker.changed(tableName);
+                    try (ResultSet generatedKeys = stmt.getGeneratedKeys()) {
+                        if (generatedKeys.next()) {
+                            generatedId = generatedKeys.getInt(1);
+                        }
                     }
-                    columns.append(camelToSnake(fieldName));
-                    placeholders.append("?");
-                    values.add(field.get(object));
                 }
-            }
-            
-            // Create SQL statement
-            String sql = "INSERT INTO " + tableName + " (" + columns.toString() + ") VALUES (" + placeholders.toString() + ")";
-            
-            // Execute the insert
-            Connection conn = DBConnection.getConnection();
-            PreparedStatement stmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
-            
-            setParameters(stmt, values);
-            
-            int affectedRows = stmt.executeUpdate();
-            
-            if (affectedRows > 0) {
-                ResultSet generatedKeys = stmt.getGeneratedKeys();
-                if (generatedKeys.next()) {
-                    return generatedKeys.getInt(1);
+                reusable = true;
+                
+                if (generatedId > 0) {
+                    return generatedId;
                 }
+            } finally {
+                cache.release(sql, true, stmt, reusable);
+                WRITE_LOCK.unlock();
+                QueryStats.record(sql, System.nanoTime() - start, affectedRows, !reusable);
             }
-            
-            stmt.close();
         } catch (Exception e) {
             System.err.println("Error inserting record: " + e.getMessage());
             e.printStackTrace();
@@ -81,53 +89,17 @@ public class DataUtil {
      * @return true if update was successful, false otherwise
      */
     public static boolean update(String tableName, Object object, String idFieldName, String... excludeFields) {
-        Set<String> excluded = new HashSet<>(Arrays.asList(excludeFields));
-        excluded.add(idFieldName); // Don't update the ID field
-        
         try {
-            Class<?> clazz = object.getClass();
-            Field[] fields = clazz.getDeclaredFields();
-            
-            // Get the ID value for the WHERE clause
-            Field idField = clazz.getDeclaredField(idFieldName);
-            idField.setAccessible(true);
-            Object idValue = idField.get(object);
-            
-            // Build SET clause and values list for SQL
-            StringBuilder setClause = new StringBuilder();
-            List<Object> values = new ArrayList<>();
-            
-            for (Field field : fields) {
-                field.setAccessible(true);
-                String fieldName = field.getName();
-                
-                // Skip excluded fields and null values
-                if (!excluded.contains(fieldName) && field.get(object) != null) {
-                    if (setClause.length() > 0) {
-                        setClause.append(", ");
-                    }
-                    setClause.append(camelToSnake(fieldName)).append(" = ?");
-                    values.add(field.get(object));
-                }
-            }
+            EntityMetadata.Binding binding = EntityMetadata.forClass(object.getClass())
+                    .updateBinding(tableName, idFieldName, excludeFields);
             
-            // Add ID value for WHERE clause
-            values.add(idValue);
-            
-            // Create SQL statement
-            String sql = "UPDATE " + tableName + " SET " + setClause.toString() + 
-                         " WHERE " + camelToSnake(idFieldName) + " = ?";
+            // Skip null values; the ID value goes last for the WHERE clause
+            Object[] fieldValues = binding.values(object);
+            String sql = binding.sql(binding.presentMask(fieldValues));
+            List<Object> values = binding.parameters(object, fieldValues);
             
             // Execute the update
-            Connection conn = DBConnection.getConnection();
-            PreparedStatement stmt = conn.prepareStatement(sql);
-            
-            setParameters(stmt, values);
-            
-            int affectedRows = stmt.executeUpdate();
-            stmt.close();
-            
-            return affectedRows > 0;
+            return executeUpdate(sql, values.toArray()) > 0;
         } catch (Exception e) {
             System.err.println("Error updating record: " + e.getMessage());
             e.printStackTrace();
@@ -145,16 +117,9 @@ public class DataUtil {
      */
     public static boolean delete(String tableName, int id, String idFieldName) {
         try {
-            String sql = "DELETE FROM " + tableName + " WHERE " + camelToSnake(idFieldName) + " = ?";
-            
-            Connection conn = DBConnection.getConnection();
-            PreparedStatement stmt = conn.prepareStatement(sql);
-            stmt.setInt(1, id);
-            
-            int affectedRows = stmt.executeUpdate();
-            stmt.close();
+            String sql = "DELETE FROM " + tableName + " WHERE " + EntityMetadata.camelToSnake(idFieldName) + " = ?";
             
-            return affectedRows > 0;
+            return executeUpdate(sql, id) > 0;
         } catch (SQLException e) {
             System.err.println("Error deleting record: " + e.getMessage());
             e.printStackTrace();
@@ -163,6 +128,124 @@ public class DataUtil {
         return false;
     }
     
+    /**
+     * Execute an INSERT, UPDATE or DELETE statement on the writer connection
+     * @param sql The SQL statement to execute
+     * @param params Parameters for the prepared statement
+     * @return The number of affected rows
+     */
+    public static int executeUpdate(String sql, Object... params) throws SQLException {
+        Connection conn = DBConnection.getConnection();
+        StatementCache cache = DBConnection.getStatementCache(conn);
+        WRITE_LOCK.lock();
+        long start = System.nanoTime();
+        int affectedRows = 0;
+        boolean failed = true;
+        try {
+            PreparedStatement stmt = cache.acquire(sql, false);
+            boolean reusable = false;
+            try {
+                setParameters(stmt, Arrays.asList(params));
+                affectedRows = stmt.executeUpdate();
+                if (affectedRows > 0) {
+                    ChangeTracker.changedBy(sql);
+                }
+                reusable = true;
+                failed = false;
+                return affectedRows;
+            } finally {
+                cache.release(sql, false, stmt, reusable);
+            }
+        } finally {
+            WRITE_LOCK.unlock();
+            QueryStats.record(sql, System.nanoTime() - start, affectedRows, failed);
+        }
+    }
+    
+    /**
+     * Insert a list of objects of the same class with one batched statement per set
+     * of non-null columns. Runs in the caller's transaction, or in its own one.
+     * @param tableName The table to insert into
+     * @param objects The objects to insert
+     * @param excludeFields Fields to exclude from insert (e.g., "id")
+     * @return The number of inserted rows
+     */
+    public static int insertBatch(String tableName, List<?> objects, String... excludeFields) throws SQLException {
+        if (objects.isEmpty()) {
+            return 0;
+        }
+        
+        EntityMetadata.Binding binding = EntityMetadata.forClass(objects.get(0).getClass())
+                .insertBinding(tableName, excludeFields);
+        
+        // Group rows by the columns they set so each group shares one SQL text
+        Map<Long, List<List<Object>>> groups = new LinkedHashMap<>();
+        for (Object object : objects) {
+            Object[] fieldValues = binding.values(object);
+            groups.computeIfAbsent(binding.presentMask(fieldValues), k -> new ArrayList<>())
+                  .add(binding.parameters(object, fieldValues));
+        }
+        
+        return inTransaction(conn -> {
+            int inserted = 0;
+            for (Map.Entry<Long, List<List<Object>>> group : groups.entrySet()) {
+                inserted += runBatch(conn, binding.sql(group.getKey()), group.getValue());
+            }
+            return inserted;
+        });
+    }
+    
+    /**
+     * Execute one INSERT, UPDATE or DELETE statement for many parameter rows with
+     * addBatch/executeBatch. Runs in the caller's transaction, or in its own one.
+     * @param sql The SQL statement to execute
+     * @param paramRows One parameter array per execution
+     * @return The total number of affected rows
+     */
+    public static int executeBatch(String sql, List<Object[]> paramRows) throws SQLException {
+        if (paramRows.isEmpty()) {
+            return 0;
+        }
+        
+        List<List<Object>> rows = new ArrayList<>(paramRows.size());
+        for (Object[] params : paramRows) {
+            rows.add(Arrays.asList(params));
+        }
+        
+        return inTransaction(conn -> runBatch(conn, sql, rows));
+    }
+    
+    private static int runBatch(Connection conn, String sql, List<List<Object>> rows) throws SQLException {
+        StatementCache cache = DBConnection.getStatementCache(conn);
+        long start = System.nanoTime();
+        int affected = 0;
+        PreparedStatement stmt = null;
+        boolean reusable = false;
+        try {
+            stmt = cache.acquire(sql, false);
+            for (List<Object> params : rows) {
+                setParameters(stmt, params);
+                stmt.addBatch();
+            }
+            
+            for (int count : stmt.executeBatch()) {
+                if (count > 0) {
+                    affected += count;
+                }
+            }
+            if (affected > 0) {
+                ChangeTracker.changedBy(sql);
+            }
+            reusable = true;
+            return affected;
+        } finally {
+            // A failed batch is closed rather than cleared, so nothing thrown here
+            // can hide the original error or keep the statement checked out
+            cache.release(sql, false, stmt, reusable);
+            QueryStats.record(sql, System.nanoTime() - start, affected, !reusable);
+        }
+    }
+    
     /**
      * Generic method to query the database and map results to objects
      * @param sql The SQL query to execute
@@ -173,34 +256,135 @@ public class DataUtil {
     public static <T> List<T> query(String sql, ResultSetMapper<T> mapper, Object... params) {
         List<T> results = new ArrayList<>();
         
+        Connection conn = null;
         try {
-            Connection conn = DBConnection.getConnection();
-            PreparedStatement stmt = conn.prepareStatement(sql);
-            
-            // Set parameters if any
-            for (int i = 0; i < params.length; i++) {
-                stmt.setObject(i + 1, params[i]);
-            }
-            
-            ResultSet rs = stmt.executeQuery();
-            
-            while (rs.next()) {
-                T obj = mapper.map(rs);
-                if (obj != null) {
-                    results.add(obj);
+            conn = acquireReadConnection();
+            StatementCache cache = DBConnection.getStatementCache(conn);
+            long start = System.nanoTime();
+            int rows = 0;
+            PreparedStatement stmt = null;
+            boolean reusable = false;
+            try {
+                stmt = cache.acquire(sql, false);
+                
+                // Set parameters if any
+                for (int i = 0; i < params.length; i++) {
+                    stmt.setObject(i + 1, params[i]);
+                }
+                
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        rows++;
+                        T obj = mapper.map(rs);
+                        if (obj != null) {
+                            results.add(obj);
+                        }
+                    }
                 }
+                reusable = true;
+            } finally {
+                cache.release(sql, false, stmt, reusable);
+                QueryStats.record(sql, System.nanoTime() - start, rows, !reusable);
             }
-            
-            rs.close();
-            stmt.close();
         } catch (SQLException e) {
             System.err.println("Error executing query: " + e.getMessage());
             e.printStackTrace();
+        } finally {
+            releaseReadConnection(conn);
         }
         
         return results;
     }
     
+    /**
+     * Stream the rows of a query to a handler as they come off the cursor, without
+     * collecting them in memory
+     * @param sql The SQL query to execute
+     * @param handler Called once per row with the ResultSet positioned on it
+     * @param params Parameters for the prepared statement
+     * @return true if every row was handled, false if the query or the handler failed
+     */
+    public static boolean forEach(String sql, RowHandler handler, Object... params) {
+        return forEach(sql, DEFAULT_FETCH_SIZE, handler, params);
+    }
+    
+    /**
+     * Stream the rows of a query to a handler, with a fetch-size hint for the driver
+     */
+    public static boolean forEach(String sql, int fetchSize, RowHandler handler, Object... params) {
+        return forEach(sql, fetchSize, null, handler, params);
+    }
+    
+    /**
+     * Stream the rows of a query that can be cancelled through a JobControl;
+     * cancelling interrupts the statement, even before its first row
+     * @param control The control of the job running the query, or null
+     * @return true if every row was handled, false if the query or the handler
+     *         failed or the job was cancelled
+     */
+    public static boolean forEach(String sql, int fetchSize, JobControl control, RowHandler handler, Object... params) {
+        return forEach(sql, fetchSize, control, null, handler, params);
+    }
+    
+    /**
+     * Stream the rows of a query as a job, first handing the result's columns to
+     * a handler, even when the query returns no rows, e.g. to write a header
+     * @param columns Called once with the result's metadata before any row, or null
+     */
+    public static boolean forEach(String sql, int fetchSize, JobControl control, ColumnsHandler columns,
+                                  RowHandler handler, Object... params) {
+        Connection conn = null;
+        try {
+            conn = acquireReadConnection();
+            StatementCache cache = DBConnection.getStatementCache(conn);
+            long start = System.nanoTime();
+            int rows = 0;
+            PreparedStatement stmt = null;
+            boolean reusable = false;
+            try {
+                stmt = cache.acquire(sql, false);
+                for (int i = 0; i < params.length; i++) {
+                    stmt.setObject(i + 1, params[i]);
+                }
+                stmt.setFetchSize(fetchSize);
+                if (control != null) {
+                    control.attach(stmt);
+                }
+                
+                try (ResultSet rs = stmt.executeQuery()) {
+                    if (columns != null) {
+                        columns.handle(rs.getMetaData());
+                    }
+                    while (rs.next()) {
+                        if (control != null && control.isCancelled()) {
+                            throw new SQLException("Cancelled");
+                        }
+                        rows++;
+                        handler.handle(rs);
+                    }
+                }
+                reusable = true;
+                return true;
+            } finally {
+                if (control != null) {
+                    control.detach();
+                }
+                cache.release(sql, false, stmt, reusable);
+                QueryStats.record(sql, System.nanoTime() - start, rows, !reusable);
+            }
+        } catch (SQLException | IOException e) {
+            if (control != null && control.isCancelled()) {
+                System.out.println("Query cancelled: " + sql);
+                return false;
+            }
+            System.err.println("Error streaming query: " + e.getMessage());
+            e.printStackTrace();
+            return false;
+        } finally {
+            releaseReadConnection(conn);
+        }
+    }
+    
     /**
      * Query a single value from the database
      * @param sql The SQL query to execute
@@ -208,29 +392,40 @@ public class DataUtil {
      * @return The first column of the first row, or null if no results
      */
     public static Object queryScalar(String sql, Object... params) {
+        Connection conn = null;
         try {
-            Connection conn = DBConnection.getConnection();
-            PreparedStatement stmt = conn.prepareStatement(sql);
-            
-            // Set parameters if any
-            for (int i = 0; i < params.length; i++) {
-                stmt.setObject(i + 1, params[i]);
-            }
-            
-            ResultSet rs = stmt.executeQuery();
-            
-            if (rs.next()) {
-                Object result = rs.getObject(1);
-                rs.close();
-                stmt.close();
+            conn = acquireReadConnection();
+            StatementCache cache = DBConnection.getStatementCache(conn);
+            long start = System.nanoTime();
+            int rows = 0;
+            PreparedStatement stmt = null;
+            boolean reusable = false;
+            try {
+                stmt = cache.acquire(sql, false);
+                
+                // Set parameters if any
+                for (int i = 0; i < params.length; i++) {
+                    stmt.setObject(i + 1, params[i]);
+                }
+                
+                Object result = null;
+                try (ResultSet rs = stmt.executeQuery()) {
+                    if (rs.next()) {
+                        rows = 1;
+                        result = rs.getObject(1);
+                    }
+                }
+                reusable = true;
                 return result;
+            } finally {
+                cache.release(sql, false, stmt, reusable);
+                QueryStats.record(sql, System.nanoTime() - start, rows, !reusable);
             }
-            
-            rs.close();
-            stmt.close();
         } catch (SQLException e) {
             System.err.println("Error executing scalar query: " + e.getMessage());
             e.printStackTrace();
+        } finally {
+            releaseReadConnection(conn);
         }
         
         return null;
@@ -240,50 +435,162 @@ public class DataUtil {
      * Execute a raw SQL statement (for CREATE, ALTER, etc.)
      */
     public static boolean executeRawSql(String sql) {
-        try {
-            Connection conn = DBConnection.getConnection();
-            Statement stmt = conn.createStatement();
+        Connection conn = DBConnection.getConnection();
+        // Like every other write, wait for other threads' transactions to end
+        WRITE_LOCK.lock();
+        long start = System.nanoTime();
+        boolean failed = true;
+        try (Statement stmt = conn.createStatement()) {
             stmt.execute(sql);
-            stmt.close();
+            ChangeTracker.changedAll();
+            failed = false;
             return true;
         } catch (SQLException e) {
             System.err.println("Error executing SQL: " + e.getMessage());
             e.printStackTrace();
             return false;
+        } finally {
+            WRITE_LOCK.unlock();
+            QueryStats.record(sql, System.nanoTime() - start, 0, failed);
         }
     }
     
     /**
-     * Begin a database transaction
+     * Run a unit of work in a transaction on the writer connection, bound to the
+     * current thread. Other threads' writes wait until it commits or rolls back;
+     * their reads keep using the pooled readers. Calls made while a transaction is
+     * already open on this thread run inside a savepoint, so an inner failure only
+     * undoes the inner work. Beginning and committing are retried when another
+     * process holds the database (SQLITE_BUSY).
+     * @param work The work to run; throwing rolls the transaction back
+     * @return The value returned by the work
      */
-    public static void beginTransaction() throws SQLException {
+    public static <T> T inTransaction(TransactionCallback<T> work) throws SQLException {
         Connection conn = DBConnection.getConnection();
-        conn.setAutoCommit(false);
+        if (conn == null) {
+            throw new SQLException("No database connection");
+        }
+        
+        int depth = TRANSACTION_DEPTH.get();
+        if (depth > 0) {
+            return inSavepoint(conn, depth, work);
+        }
+        
+        WRITE_LOCK.lock();
+        try {
+            retryWhileBusy(() -> conn.setAutoCommit(false));
+            TRANSACTION_DEPTH.set(1);
+            try {
+                T result = work.execute(conn);
+                retryWhileBusy(conn::commit);
+                return result;
+            } catch (SQLException | RuntimeException | Error e) {
+                try {
+                    conn.rollback();
+                } catch (SQLException ex) {
+                    System.err.println("Error rolling back transaction: " + ex.getMessage());
+                }
+                throw e;
+            } finally {
+                TRANSACTION_DEPTH.remove();
+                ChangeTracker.transactionEnded();
+                try {
+                    conn.setAutoCommit(true);
+                } catch (SQLException ex) {
+                    System.err.println("Error restoring auto-commit: " + ex.getMessage());
+                }
+            }
+        } finally {
+            WRITE_LOCK.unlock();
+        }
     }
     
     /**
-     * Commit a database transaction
+     * Whether the current thread has a transaction open
      */
-    public static void commitTransaction() throws SQLException {
-        Connection conn = DBConnection.getConnection();
-        conn.commit();
-        conn.setAutoCommit(true);
+    public static boolean isInTransaction() {
+        return TRANSACTION_DEPTH.get() > 0;
     }
     
-    /**
-     * Rollback a database transaction
-     */
-    public static void rollbackTransaction() throws SQLException {
-        Connection conn = DBConnection.getConnection();
-        conn.rollback();
-        conn.setAutoCommit(true);
+    private static <T> T inSavepoint(Connection conn, int depth, TransactionCallback<T> work) throws SQLException {
+        Savepoint savepoint = conn.setSavepoint("sp_" + depth);
+        TRANSACTION_DEPTH.set(depth + 1);
+        try {
+            T result = work.execute(conn);
+            conn.releaseSavepoint(savepoint);
+            return result;
+        } catch (SQLException | RuntimeException | Error e) {
+            try {
+                conn.rollback(savepoint);
+                conn.releaseSavepoint(savepoint);
+            } catch (SQLException ex) {
+                System.err.println("Error rolling back to savepoint: " + ex.getMessage());
+            }
+            throw e;
+        } finally {
+            TRANSACTION_DEPTH.set(depth);
+        }
+    }
+    
+    private static void retryWhileBusy(SqlAction action) throws SQLException {
+        int attempts = AppConfig.getInt("db.busyRetries", 5);
+        long backoffMillis = 50;
+        
+        for (int attempt = 1; ; attempt++) {
+            try {
+                action.run();
+                return;
+            } catch (SQLException e) {
+                if (!isBusy(e) || attempt >= attempts) {
+                    throw e;
+                }
+                System.err.println("Database busy, retrying (" + attempt + "/" + attempts + ")");
+                try {
+                    Thread.sleep(backoffMillis);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+                backoffMillis *= 2;
+            }
+        }
+    }
+    
+    private static boolean isBusy(SQLException e) {
+        int code = e.getErrorCode() & 0xff; // extended result codes keep the primary code in the low byte
+        if (code == SQLITE_BUSY || code == SQLITE_LOCKED) {
+            return true;
+        }
+        String message = e.getMessage();
+        return message != null && (message.contains("SQLITE_BUSY") || message.contains("database is locked"));
     }
     
     /**
-     * Convert camelCase field names to snake_case column names
+     * Pick the connection for a read: the writer when the current thread is inside
+     * a transaction (so it sees its own uncommitted changes), a pooled reader otherwise
      */
-    private static String camelToSnake(String camelCase) {
-        return camelCase.replaceAll("([a-z])([A-Z])", "$1_$2").toLowerCase();
+    private static Connection acquireReadConnection() throws SQLException {
+        if (isInTransaction()) {
+            return DBConnection.getConnection();
+        }
+        Connection conn = DBConnection.acquireReadConnection();
+        if (conn != null && conn == DBConnection.getConnection()) {
+            // No pooled reader: the writer stands in, so wait for other threads'
+            // writes and transactions rather than read their uncommitted rows
+            WRITE_LOCK.lock();
+        }
+        return conn;
+    }
+    
+    private static void releaseReadConnection(Connection conn) {
+        if (conn == null || isInTransaction()) {
+            return;
+        }
+        if (conn == DBConnection.getConnection()) {
+            WRITE_LOCK.unlock();
+        } else {
+            DBConnection.releaseReadConnection(conn);
+        }
     }
     
     /**
@@ -319,4 +626,29 @@ public class DataUtil {
     public interface ResultSetMapper<T> {
         T map(ResultSet rs) throws SQLException;
     }
+    
+    /**
+     * Unit of work run by {@link #inTransaction(TransactionCallback)}
+     */
+    public interface TransactionCallback<T> {
+        T execute(Connection conn) throws SQLException;
+    }
+    
+    private interface SqlAction {
+        void run() throws SQLException;
+    }
+    
+    /**
+     * Interface for consuming streamed ResultSet rows
+     */
+    public interface RowHandler {
+        void handle(ResultSet rs) throws SQLException, IOException;
+    }
+    
+    /**
+     * Interface for consuming the columns of a streamed query before its rows
+     */
+    public interface ColumnsHandler {
+        void handle(ResultSetMetaData metaData) throws SQLException, IOException;
+    }
 }
\ No newline at end of file
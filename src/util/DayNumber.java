@@ -0,0 +1,72 @@
+package util;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Date;
+
+/**
+ * Day numbers (days since 1970-01-01) as stored in the indexed "order_day" and
+ * "adj_day" columns.
+ *
+ * The database fills those columns from the stored local date text, so date
+ * filters are written as half-open ranges of day numbers, e.g.
+ * "order_day &gt;= ? AND order_day &lt; ?" with {@link #of(Date)} and
+ * {@link #after(Date)}, which SQLite answers with an index range scan.
+ */
+public class DayNumber {
+
+    /**
+     * SQL expression giving the day number of a date/time text column
+     */
+    public static String sqlExpression(String column) {
+        return "CAST(julianday(date(" + column + ")) - 2440587.5 AS INTEGER)";
+    }
+
+    /**
+     * Day number of the local date of a timestamp
+     */
+    public static long of(Date date) {
+        return of(Instant.ofEpochMilli(date.getTime()).atZone(ZoneId.systemDefault()).toLocalDate());
+    }
+
+    public static long of(LocalDate date) {
+        return date.toEpochDay();
+    }
+
+    /**
+     * Exclusive upper bound for a range ending on the given date, inclusive of
+     * that whole day
+     */
+    public static long after(Date date) {
+        return of(date) + 1;
+    }
+
+    /**
+     * Day number of today, in local time
+     */
+    public static long today() {
+        return LocalDate.now().toEpochDay();
+    }
+
+    /**
+     * Day number of the given number of days before today
+     */
+    public static long daysAgo(int days) {
+        return LocalDate.now().minusDays(days).toEpochDay();
+    }
+
+    /**
+     * Local date of a day number
+     */
+    public static LocalDate toLocalDate(long day) {
+        return LocalDate.ofEpochDay(day);
+    }
+
+    /**
+     * Midnight (local time) at the start of a day number
+     */
+    public static Date toDate(long day) {
+        return Date.from(LocalDate.ofEpochDay(day).atStartOfDay(ZoneId.systemDefault()).toInstant());
+    }
+}
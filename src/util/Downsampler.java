@@ -0,0 +1,125 @@
+package util;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Downsampling of time series for charts with largest-triangle-three-buckets
+ * (LTTB).
+ *
+ * The points between the first and the last are split into equal buckets and
+ * from each bucket the point forming the largest triangle with the point kept
+ * before it and the average of the next bucket is kept. Peaks and dips survive,
+ * which plain averaging or every-nth sampling would flatten. The number of
+ * points kept follows the chart's pixel width, as a line cannot show more than
+ * about one point every couple of pixels.
+ */
+public class Downsampler {
+    /** Points kept when the chart width is not known yet */
+    public static final int DEFAULT_MAX_POINTS = 300;
+
+    private static final int PIXELS_PER_POINT = 2;
+    private static final int MIN_POINTS = 10;
+
+    /**
+     * Number of points worth drawing on a chart of the given width
+     * @param pixelWidth The width in pixels, 0 or less when not known
+     */
+    public static int maxPointsForWidth(int pixelWidth) {
+        if (pixelWidth <= 0) {
+            return DEFAULT_MAX_POINTS;
+        }
+        return Math.max(MIN_POINTS, pixelWidth / PIXELS_PER_POINT);
+    }
+
+    /**
+     * Indexes of the points to keep, in ascending order
+     * @param x The x values, ascending
+     * @param y The y values
+     * @param threshold The number of points to keep; at least 3
+     * @return All indexes when there are no more points than the threshold
+     */
+    public static int[] lttb(double[] x, double[] y, int threshold) {
+        int length = x.length;
+        if (threshold >= length || threshold < 3) {
+            int[] all = new int[length];
+            for (int i = 0; i < length; i++) {
+                all[i] = i;
+            }
+            return all;
+        }
+
+        int[] kept = new int[threshold];
+        int count = 0;
+        kept[count++] = 0;
+
+        // Buckets for the points between the first and the last
+        double bucketSize = (double) (length - 2) / (threshold - 2);
+        int previous = 0;
+        for (int bucket = 0; bucket < threshold - 2; bucket++) {
+            int start = (int) Math.floor(bucket * bucketSize) + 1;
+            int end = (int) Math.floor((bucket + 1) * bucketSize) + 1;
+
+            // Average of the next bucket, or the last point for the last bucket
+            int nextStart = end;
+            int nextEnd = Math.min((int) Math.floor((bucket + 2) * bucketSize) + 1, length);
+            double averageX = 0;
+            double averageY = 0;
+            for (int i = nextStart; i < nextEnd; i++) {
+                averageX += x[i];
+                averageY += y[i];
+            }
+            int nextCount = nextEnd - nextStart;
+            averageX /= nextCount;
+            averageY /= nextCount;
+
+            double maxArea = -1;
+            int chosen = start;
+            for (int i = start; i < end; i++) {
+                double area = Math.abs((x[previous] - averageX) * (y[i] - y[previous])
+                        - (x[previous] - x[i]) * (averageY - y[previous]));
+                if (area > maxArea) {
+                    maxArea = area;
+                    chosen = i;
+                }
+            }
+            kept[count++] = chosen;
+            previous = chosen;
+        }
+
+        kept[count] = length - 1;
+        return kept;
+    }
+
+    /**
+     * Downsample a series keyed by date, e.g. the buckets of
+     * {@link TimeBuckets#aggregate}
+     * @param series The values in date order
+     * @param threshold The number of points to keep
+     * @return The kept points in date order; the series itself when it is short enough
+     */
+    public static Map<LocalDate, Double> lttb(Map<LocalDate, Double> series, int threshold) {
+        if (series.size() <= threshold) {
+            return series;
+        }
+
+        List<LocalDate> dates = new ArrayList<>(series.keySet());
+        double[] x = new double[dates.size()];
+        double[] y = new double[dates.size()];
+        int i = 0;
+        for (Map.Entry<LocalDate, Double> point : series.entrySet()) {
+            x[i] = point.getKey().toEpochDay();
+            y[i] = point.getValue();
+            i++;
+        }
+
+        Map<LocalDate, Double> kept = new LinkedHashMap<>();
+        for (int index : lttb(x, y, threshold)) {
+            kept.put(dates.get(index), y[index]);
+        }
+        return kept;
+    }
+}
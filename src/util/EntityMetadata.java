@@ -0,0 +1,224 @@
+package util;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Column names and field accessors of a model class, built once per class.
+ *
+ * Reflection and the camelCase to snake_case conversion only run the first time a
+ * class is seen. Persisting a row afterwards reads fields through cached
+ * MethodHandles and reuses SQL text cached per table, excluded fields and set of
+ * non-null columns.
+ */
+public class EntityMetadata {
+    private static final ConcurrentMap<Class<?>, EntityMetadata> REGISTRY = new ConcurrentHashMap<>();
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+
+    private final Class<?> type;
+    private final String[] fieldNames;
+    private final String[] columns;
+    private final MethodHandle[] getters;
+    private final ConcurrentMap<String, Binding> bindings = new ConcurrentHashMap<>();
+
+    private EntityMetadata(Class<?> type) {
+        this.type = type;
+
+        List<Field> fields = new ArrayList<>();
+        for (Field field : type.getDeclaredFields()) {
+            if (!Modifier.isStatic(field.getModifiers()) && !field.isSynthetic()) {
+                fields.add(field);
+            }
+        }
+
+        fieldNames = new String[fields.size()];
+        columns = new String[fields.size()];
+        getters = new MethodHandle[fields.size()];
+
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        for (int i = 0; i < fields.size(); i++) {
+            Field field = fields.get(i);
+            field.setAccessible(true);
+            fieldNames[i] = field.getName();
+            columns[i] = camelToSnake(field.getName());
+            try {
+                getters[i] = lookup.unreflectGetter(field).asType(GETTER_TYPE);
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException("Cannot access field " + type.getName() + "." + field.getName(), e);
+            }
+        }
+    }
+
+    /**
+     * Get the metadata for a model class, building it on first use
+     */
+    public static EntityMetadata forClass(Class<?> type) {
+        return REGISTRY.computeIfAbsent(type, EntityMetadata::new);
+    }
+
+    /**
+     * Get the binding used to insert instances into a table
+     * @param tableName The table to insert into
+     * @param excludeFields Fields that are never written (e.g., "id")
+     */
+    public Binding insertBinding(String tableName, String... excludeFields) {
+        String key = "I|" + tableName + "|" + String.join(",", excludeFields);
+        return bindings.computeIfAbsent(key, k -> new Binding(tableName, null, excludeFields));
+    }
+
+    /**
+     * Get the binding used to update instances of a table by their ID field
+     * @param tableName The table to update
+     * @param idFieldName The field used in the WHERE clause
+     * @param excludeFields Fields that are never written
+     */
+    public Binding updateBinding(String tableName, String idFieldName, String... excludeFields) {
+        String key = "U|" + tableName + "|" + idFieldName + "|" + String.join(",", excludeFields);
+        return bindings.computeIfAbsent(key, k -> new Binding(tableName, idFieldName, excludeFields));
+    }
+
+    /**
+     * Convert camelCase field names to snake_case column names
+     */
+    public static String camelToSnake(String camelCase) {
+        return camelCase.replaceAll("([a-z])([A-Z])", "$1_$2").toLowerCase();
+    }
+
+    private int indexOf(String fieldName) {
+        for (int i = 0; i < fieldNames.length; i++) {
+            if (fieldNames[i].equals(fieldName)) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("No field " + fieldName + " in " + type.getName());
+    }
+
+    private Object get(int index, Object object) {
+        try {
+            return (Object) getters[index].invokeExact(object);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new IllegalStateException(t);
+        }
+    }
+
+    /**
+     * Insert or update statement for one table. As before, null fields are left out
+     * of the statement so column defaults apply; the SQL for each combination of
+     * non-null columns is built once and cached by a bit mask.
+     */
+    public class Binding {
+        private final String tableName;
+        private final int[] fieldIndexes;
+        private final int idIndex;
+        private final ConcurrentMap<Long, String> sqlByMask = new ConcurrentHashMap<>();
+
+        private Binding(String tableName, String idFieldName, String[] excludeFields) {
+            this.tableName = tableName;
+            this.idIndex = (idFieldName == null) ? -1 : indexOf(idFieldName);
+
+            Set<String> excluded = new HashSet<>(Arrays.asList(excludeFields));
+            if (idFieldName != null) {
+                excluded.add(idFieldName); // Don't update the ID field
+            }
+
+            List<Integer> included = new ArrayList<>();
+            for (int i = 0; i < fieldNames.length; i++) {
+                if (!excluded.contains(fieldNames[i])) {
+                    included.add(i);
+                }
+            }
+            if (included.size() > Long.SIZE) {
+                throw new IllegalArgumentException(type.getName() + " has more than " + Long.SIZE + " columns");
+            }
+
+            fieldIndexes = new int[included.size()];
+            for (int i = 0; i < fieldIndexes.length; i++) {
+                fieldIndexes[i] = included.get(i);
+            }
+        }
+
+        /**
+         * Read the values of the bound fields, in column order
+         */
+        public Object[] values(Object object) {
+            Object[] values = new Object[fieldIndexes.length];
+            for (int i = 0; i < fieldIndexes.length; i++) {
+                values[i] = get(fieldIndexes[i], object);
+            }
+            return values;
+        }
+
+        /**
+         * Bit mask of the columns that have a non-null value
+         */
+        public long presentMask(Object[] values) {
+            long mask = 0;
+            for (int i = 0; i < values.length; i++) {
+                if (values[i] != null) {
+                    mask |= 1L << i;
+                }
+            }
+            return mask;
+        }
+
+        /**
+         * Statement parameters for the non-null values, followed by the ID for updates
+         */
+        public List<Object> parameters(Object object, Object[] values) {
+            List<Object> params = new ArrayList<>(values.length + 1);
+            for (Object value : values) {
+                if (value != null) {
+                    params.add(value);
+                }
+            }
+            if (idIndex >= 0) {
+                params.add(get(idIndex, object));
+            }
+            return params;
+        }
+
+        /**
+         * SQL text for the given set of non-null columns
+         */
+        public String sql(long mask) {
+            return sqlByMask.computeIfAbsent(mask, this::buildSql);
+        }
+
+        private String buildSql(long mask) {
+            StringBuilder columnList = new StringBuilder();
+            StringBuilder placeholders = new StringBuilder();
+
+            for (int i = 0; i < fieldIndexes.length; i++) {
+                if ((mask & (1L << i)) == 0) {
+                    continue;
+                }
+                if (columnList.length() > 0) {
+                    columnList.append(", ");
+                    placeholders.append(", ");
+                }
+                columnList.append(columns[fieldIndexes[i]]);
+                placeholders.append("?");
+                if (idIndex >= 0) {
+                    columnList.append(" = ?");
+                }
+            }
+
+            if (idIndex >= 0) {
+                return "UPDATE " + tableName + " SET " + columnList + " WHERE " + columns[idIndex] + " = ?";
+            }
+            return "INSERT INTO " + tableName + " (" + columnList + ") VALUES (" + placeholders + ")";
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package util;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Progress and cancellation of a long-running query, shared between the thread
+ * running it and the threads watching it.
+ *
+ * DataUtil registers the statement it is stepping through, so cancelling
+ * interrupts SQLite in the middle of a step, e.g. a sort or an aggregate that
+ * has not produced its first row yet, rather than at the next row.
+ */
+public class JobControl {
+    private volatile boolean cancelled;
+    private volatile long rowsDone;
+    private volatile long rowsTotal = -1;
+    private Statement running;
+
+    /**
+     * Stop the job: the running statement, if any, is interrupted and any
+     * statement it starts afterwards fails straight away
+     */
+    public synchronized void cancel() {
+        cancelled = true;
+        if (running != null) {
+            try {
+                running.cancel();
+            } catch (SQLException e) {
+                System.err.println("Error cancelling statement: " + e.getMessage());
+            }
+        }
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Rows handled so far
+     */
+    public long getRowsDone() {
+        return rowsDone;
+    }
+
+    /**
+     * Count one more row handled; only the job's own thread calls this
+     */
+    public void rowDone() {
+        rowsDone++;
+    }
+
+    /**
+     * Rows expected in total, -1 when not known
+     */
+    public long getRowsTotal() {
+        return rowsTotal;
+    }
+
+    public void setRowsTotal(long rowsTotal) {
+        this.rowsTotal = rowsTotal;
+    }
+
+    /**
+     * Register the statement about to run, failing if the job is already cancelled
+     */
+    synchronized void attach(Statement statement) throws SQLException {
+        if (cancelled) {
+            throw new SQLException("Cancelled");
+        }
+        running = statement;
+    }
+
+    /**
+     * Unregister the statement before it goes back to the statement cache, so a
+     * late cancel cannot interrupt another query on the same connection
+     */
+    synchronized void detach() {
+        running = null;
+    }
+}
@@ -0,0 +1,322 @@
+package util;
+
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.font.PDFont;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.ResultSetMetaData;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Writes the rows of a query as a paginated PDF table while they come off the
+ * cursor.
+ *
+ * Column widths are measured from the header and the first rows, the page turns
+ * to landscape when the table would not fit upright, and the header row is
+ * repeated on every page. Cells too wide for their column are shortened to fit
+ * with "...". Each page is written and closed before the next one starts, and
+ * the document keeps at most 16 MB of page content in memory, spilling the rest
+ * to a scratch file, so large reports do not grow the heap with their row count.
+ */
+public class PdfTableWriter {
+    private static final float MARGIN = 40;
+    private static final float TITLE_FONT_SIZE = 16;
+    private static final float FONT_SIZE = 9;
+    private static final float ROW_HEIGHT = 13;
+    private static final float CELL_PADDING = 4;
+    private static final int SAMPLE_ROWS = 200;
+    private static final int FETCH_SIZE = 500;
+    private static final long MAX_MAIN_MEMORY = 16L * 1024 * 1024;
+
+    private static final PDFont FONT = PDType1Font.HELVETICA;
+    private static final PDFont BOLD_FONT = PDType1Font.HELVETICA_BOLD;
+
+    private final PDDocument document;
+    private final String title;
+    private final String subtitle;
+
+    private String[] columns;
+    private float[] widths;
+    private PDRectangle pageSize = PDRectangle.A4;
+    private final List<String[]> sample = new ArrayList<>();
+    private boolean laidOut;
+
+    private PDPageContentStream contentStream;
+    private float yPosition;
+    private int pageNumber;
+
+    // Characters Helvetica can encode, checked once each
+    private final BitSet encodable = new BitSet();
+    private final BitSet checked = new BitSet();
+
+    private PdfTableWriter(String title, String subtitle) {
+        this.document = new PDDocument(MemoryUsageSetting.setupMixed(MAX_MAIN_MEMORY));
+        this.title = title;
+        this.subtitle = subtitle;
+    }
+
+    /**
+     * Export the rows of a query as a PDF table
+     * @param sql The SQL query
+     * @param title Title on the first page
+     * @param subtitle Line under the title, e.g. the generation date; may be null
+     * @param filePath The file to write, replaced if it exists
+     * @param params Parameters for the query
+     * @return The number of rows written, or -1 on error
+     */
+    public static long export(String sql, String title, String subtitle, String filePath, Object... params) {
+        return export(sql, title, subtitle, filePath, null, params);
+    }
+
+    /**
+     * Export the rows of a query as a job, counting each row written as progress
+     * @param control The job's control, or null
+     * @return The number of rows written, or -1 on error or when cancelled
+     */
+    public static long export(String sql, String title, String subtitle, String filePath, JobControl control,
+            Object... params) {
+        PdfTableWriter writer = new PdfTableWriter(title, subtitle);
+        try {
+            long[] rows = {0};
+            boolean success = DataUtil.forEach(sql, FETCH_SIZE, control, rs -> {
+                if (writer.columns == null) {
+                    ResultSetMetaData metaData = rs.getMetaData();
+                    writer.columns = new String[metaData.getColumnCount()];
+                    for (int i = 0; i < writer.columns.length; i++) {
+                        writer.columns[i] = metaData.getColumnLabel(i + 1);
+                    }
+                }
+
+                String[] row = new String[writer.columns.length];
+                for (int i = 0; i < row.length; i++) {
+                    String value = rs.getString(i + 1);
+                    row[i] = value != null ? value : "";
+                }
+                writer.addRow(row);
+                rows[0]++;
+                if (control != null) {
+                    control.rowDone();
+                }
+            }, params);
+            if (!success) {
+                return -1;
+            }
+
+            writer.finish();
+            writer.document.save(new File(filePath));
+            return rows[0];
+        } catch (IOException e) {
+            System.err.println("Error writing PDF file " + filePath + ": " + e.getMessage());
+            e.printStackTrace();
+            return -1;
+        } finally {
+            try {
+                writer.document.close();
+            } catch (IOException e) {
+                System.err.println("Error closing PDF document: " + e.getMessage());
+            }
+        }
+    }
+
+    private void addRow(String[] row) throws IOException {
+        if (!laidOut) {
+            // Hold the first rows back until the column widths are known
+            sample.add(row);
+            if (sample.size() < SAMPLE_ROWS) {
+                return;
+            }
+            layOut();
+            return;
+        }
+        writeRow(row);
+    }
+
+    private void finish() throws IOException {
+        if (!laidOut) {
+            layOut();
+        }
+        if (columns == null) {
+            writeText("No data", FONT, FONT_SIZE, MARGIN, yPosition);
+        }
+        closePage();
+    }
+
+    /**
+     * Measure the columns from the header and the sampled rows, pick the page
+     * orientation, then write the sampled rows
+     */
+    private void layOut() throws IOException {
+        laidOut = true;
+        if (columns != null) {
+            widths = new float[columns.length];
+            for (int i = 0; i < columns.length; i++) {
+                widths[i] = textWidth(columns[i], BOLD_FONT) + 2 * CELL_PADDING;
+            }
+            for (String[] row : sample) {
+                for (int i = 0; i < row.length; i++) {
+                    widths[i] = Math.max(widths[i], textWidth(row[i], FONT) + 2 * CELL_PADDING);
+                }
+            }
+
+            float natural = 0;
+            for (float width : widths) {
+                natural += width;
+            }
+            if (natural > PDRectangle.A4.getWidth() - 2 * MARGIN) {
+                pageSize = new PDRectangle(PDRectangle.A4.getHeight(), PDRectangle.A4.getWidth());
+            }
+
+            // Shrink every column in proportion when the table is still too wide
+            float available = pageSize.getWidth() - 2 * MARGIN;
+            if (natural > available) {
+                for (int i = 0; i < widths.length; i++) {
+                    widths[i] *= available / natural;
+                }
+            }
+        }
+
+        newPage();
+        for (String[] row : sample) {
+            writeRow(row);
+        }
+        sample.clear();
+    }
+
+    private void newPage() throws IOException {
+        closePage();
+        PDPage page = new PDPage(pageSize);
+        document.addPage(page);
+        contentStream = new PDPageContentStream(document, page);
+        pageNumber++;
+        yPosition = pageSize.getHeight() - MARGIN;
+
+        if (pageNumber == 1) {
+            writeText(title, BOLD_FONT, TITLE_FONT_SIZE, MARGIN, yPosition - TITLE_FONT_SIZE);
+            yPosition -= TITLE_FONT_SIZE + 10;
+            if (subtitle != null) {
+                writeText(subtitle, FONT, FONT_SIZE + 1, MARGIN, yPosition - FONT_SIZE);
+                yPosition -= FONT_SIZE + 14;
+            }
+        }
+
+        if (columns != null) {
+            writeCells(columns, BOLD_FONT);
+            contentStream.moveTo(MARGIN, yPosition + 2);
+            contentStream.lineTo(pageSize.getWidth() - MARGIN, yPosition + 2);
+            contentStream.stroke();
+            yPosition -= 4;
+        }
+    }
+
+    private void closePage() throws IOException {
+        if (contentStream == null) {
+            return;
+        }
+        writeText("Page " + pageNumber, FONT, FONT_SIZE, pageSize.getWidth() - MARGIN - 40, MARGIN / 2);
+        contentStream.close();
+        contentStream = null;
+    }
+
+    private void writeRow(String[] row) throws IOException {
+        if (yPosition - ROW_HEIGHT < MARGIN) {
+            newPage();
+        }
+        writeCells(row, FONT);
+    }
+
+    private void writeCells(String[] cells, PDFont font) throws IOException {
+        yPosition -= ROW_HEIGHT;
+        float x = MARGIN;
+        contentStream.beginText();
+        contentStream.setFont(font, FONT_SIZE);
+        contentStream.newLineAtOffset(x + CELL_PADDING, yPosition + 3);
+        for (int i = 0; i < cells.length; i++) {
+            contentStream.showText(fit(cells[i], font, widths[i] - 2 * CELL_PADDING));
+            contentStream.newLineAtOffset(widths[i], 0);
+        }
+        contentStream.endText();
+    }
+
+    private void writeText(String text, PDFont font, float size, float x, float y) throws IOException {
+        contentStream.beginText();
+        contentStream.setFont(font, size);
+        contentStream.newLineAtOffset(x, y);
+        contentStream.showText(encodable(text, font));
+        contentStream.endText();
+    }
+
+    /**
+     * The text as it fits in the given width, shortened with "..." if needed
+     */
+    private String fit(String text, PDFont font, float width) throws IOException {
+        text = encodable(text, font);
+        if (textWidth(text, font) <= width) {
+            return text;
+        }
+
+        // Longest prefix that fits together with the ellipsis
+        int low = 0;
+        int high = text.length();
+        while (low < high) {
+            int middle = (low + high + 1) / 2;
+            if (textWidth(text.substring(0, middle) + "...", font) <= width) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return low == 0 ? "" : text.substring(0, low) + "...";
+    }
+
+    private float textWidth(String text, PDFont font) throws IOException {
+        return font.getStringWidth(encodable(text, font)) / 1000 * FONT_SIZE;
+    }
+
+    /**
+     * Replace characters the font cannot encode, and line breaks, so a stray
+     * value cannot abort the report
+     */
+    private String encodable(String text, PDFont font) {
+        StringBuilder result = null;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (!canEncode(c, font)) {
+                if (result == null) {
+                    result = new StringBuilder(text.length()).append(text, 0, i);
+                }
+                result.append(c == '\n' || c == '\r' || c == '\t' ? ' ' : '?');
+            } else if (result != null) {
+                result.append(c);
+            }
+        }
+        return result != null ? result.toString() : text;
+    }
+
+    private boolean canEncode(char c, PDFont font) {
+        if (c >= 32 && c < 127) {
+            return true;
+        }
+        if (c < 32) {
+            return false;
+        }
+        // Both fonts share the WinAnsi encoding, so one check serves both
+        if (!checked.get(c)) {
+            checked.set(c);
+            try {
+                font.encode(String.valueOf(c));
+                encodable.set(c);
+            } catch (IOException | IllegalArgumentException e) {
+                // Not in the font's encoding
+            }
+        }
+        return encodable.get(c);
+    }
+}
@@ -0,0 +1,137 @@
+package util;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Checks query plans for full table scans.
+ *
+ * When "db.auditQueryPlans=true" is set in config.properties, DataUtil hands every
+ * distinct SQL string to {@link #check(Connection, String)} the first time it runs.
+ * The statement is passed through EXPLAIN QUERY PLAN and each step that scans a
+ * whole table without an index is logged and kept in {@link #getFindings()}.
+ * Tables that are expected to be scanned (small lookup tables, listing screens)
+ * can be skipped with "db.auditQueryPlans.ignore=Category,Supplier".
+ */
+public class QueryPlanAuditor {
+    private static final Set<String> SEEN = ConcurrentHashMap.newKeySet();
+    private static final List<String> FINDINGS = Collections.synchronizedList(new ArrayList<>());
+
+    private static Boolean enabled;
+    private static Set<String> ignoredTables;
+
+    /**
+     * Audit a statement once, if auditing is enabled. Errors are logged and never
+     * reach the caller.
+     */
+    public static void check(Connection conn, String sql) {
+        if (!isEnabled() || !SEEN.add(sql)) {
+            return;
+        }
+
+        try {
+            for (String scan : audit(conn, sql)) {
+                String finding = scan + " in: " + sql.trim();
+                FINDINGS.add(finding);
+                System.err.println("Query plan audit: " + finding);
+            }
+        } catch (SQLException e) {
+            System.err.println("Query plan audit failed for: " + sql.trim());
+            System.err.println("Error message: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Run EXPLAIN QUERY PLAN on a statement and return its full-scan steps.
+     * Parameters are left unbound, which does not change the chosen plan.
+     * @param conn The connection to explain on
+     * @param sql The statement to check
+     * @return The plan details of each unindexed table scan
+     */
+    public static List<String> audit(Connection conn, String sql) throws SQLException {
+        List<String> scans = new ArrayList<>();
+
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("EXPLAIN QUERY PLAN " + sql)) {
+            while (rs.next()) {
+                String detail = rs.getString("detail");
+                if (isFullScan(detail) && !isIgnored(detail)) {
+                    scans.add(detail);
+                }
+            }
+        }
+
+        return scans;
+    }
+
+    /**
+     * Get the findings logged since startup
+     */
+    public static List<String> getFindings() {
+        synchronized (FINDINGS) {
+            return new ArrayList<>(FINDINGS);
+        }
+    }
+
+    /**
+     * Forget audited statements and findings, and re-read the settings
+     */
+    public static synchronized void reset() {
+        SEEN.clear();
+        FINDINGS.clear();
+        enabled = null;
+        ignoredTables = null;
+    }
+
+    private static synchronized boolean isEnabled() {
+        if (enabled == null) {
+            enabled = AppConfig.getBoolean("db.auditQueryPlans", false);
+
+            ignoredTables = new HashSet<>();
+            String ignore = AppConfig.getString("db.auditQueryPlans.ignore", "");
+            for (String table : Arrays.asList(ignore.split(","))) {
+                if (!table.trim().isEmpty()) {
+                    ignoredTables.add(table.trim().toLowerCase(Locale.ROOT));
+                }
+            }
+        }
+        return enabled;
+    }
+
+    /**
+     * A step is a full scan when it scans a table ("SCAN t", or "SCAN TABLE t" on
+     * older SQLite) without using an index. Scans of subquery results and
+     * constant rows are not table scans.
+     */
+    private static boolean isFullScan(String detail) {
+        if (detail == null) {
+            return false;
+        }
+        String upper = detail.toUpperCase(Locale.ROOT);
+        return upper.startsWith("SCAN ")
+                && !upper.contains(" USING ")
+                && !upper.startsWith("SCAN SUBQUERY")
+                && !upper.startsWith("SCAN CONSTANT");
+    }
+
+    private static synchronized boolean isIgnored(String detail) {
+        if (ignoredTables == null || ignoredTables.isEmpty()) {
+            return false;
+        }
+
+        // "SCAN TABLE name AS alias" or "SCAN name AS alias"
+        String[] words = detail.replace("\"", "").split("\\s+");
+        int index = (words.length > 2 && words[1].equalsIgnoreCase("TABLE")) ? 2 : 1;
+        return index < words.length && ignoredTables.contains(words[index].toLowerCase(Locale.ROOT));
+    }
+}
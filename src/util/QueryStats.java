@@ -0,0 +1,280 @@
+package util;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/**
+ * Call counts, row counts and latency histograms for every SQL statement run
+ * through DataUtil, grouped by statement shape.
+ *
+ * The shape is the SQL text with literals replaced by "?" and whitespace
+ * collapsed, so statements that differ only in inlined values or formatting
+ * share one entry. Statements slower than "db.slowQueryMillis" (default 200,
+ * 0 turns the log off) are logged as they happen. {@link #snapshot()} returns
+ * the entries ordered by total time, and when "db.queryStatsFile" is set the
+ * top entries are written to that file when the database is closed.
+ */
+public class QueryStats {
+    /** Upper bounds, in milliseconds, of the latency histogram buckets; the last bucket is open */
+    public static final long[] BUCKET_MILLIS = {1, 2, 5, 10, 25, 50, 100, 250, 500, 1000};
+
+    private static final int MAX_CACHED_SHAPES = 2048;
+    private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^']|'')*'");
+    private static final Pattern NUMBER_LITERAL = Pattern.compile("(?<![\\w.])-?\\d+(?:\\.\\d+)?\\b");
+    private static final Pattern IN_LIST = Pattern.compile("\\(\\s*\\?(?:\\s*,\\s*\\?)+\\s*\\)");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private static final ConcurrentMap<String, Shape> SHAPES = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<String, String> NORMALIZED = new ConcurrentHashMap<>();
+
+    private static volatile long slowQueryNanos = -1;
+
+    /**
+     * Record one execution of a statement
+     * @param sql The SQL text as executed
+     * @param elapsedNanos Time spent executing and reading results
+     * @param rows Rows returned or affected
+     * @param failed Whether the statement threw
+     */
+    public static void record(String sql, long elapsedNanos, long rows, boolean failed) {
+        String shape = normalize(sql);
+        SHAPES.computeIfAbsent(shape, Shape::new).add(elapsedNanos, rows, failed);
+
+        long threshold = getSlowQueryNanos();
+        if (threshold > 0 && elapsedNanos >= threshold) {
+            System.err.println("Slow query (" + (elapsedNanos / 1_000_000) + " ms, " + rows + " rows"
+                    + (failed ? ", failed" : "") + "): " + shape);
+        }
+    }
+
+    /**
+     * Reduce a statement to its shape: literals become "?", IN lists of
+     * placeholders become "(?...)" and whitespace is collapsed
+     */
+    public static String normalize(String sql) {
+        String shape = NORMALIZED.get(sql);
+        if (shape != null) {
+            return shape;
+        }
+
+        shape = STRING_LITERAL.matcher(sql).replaceAll("?");
+        shape = NUMBER_LITERAL.matcher(shape).replaceAll("?");
+        shape = IN_LIST.matcher(shape).replaceAll("(?...)");
+        shape = WHITESPACE.matcher(shape).replaceAll(" ").trim();
+
+        if (NORMALIZED.size() < MAX_CACHED_SHAPES) {
+            NORMALIZED.put(sql, shape);
+        }
+        return shape;
+    }
+
+    /**
+     * Get the statistics of every statement shape, slowest total time first
+     */
+    public static List<Entry> snapshot() {
+        List<Entry> entries = new ArrayList<>();
+        for (Shape shape : SHAPES.values()) {
+            entries.add(shape.toEntry());
+        }
+        entries.sort(Comparator.comparingLong(Entry::getTotalNanos).reversed());
+        return entries;
+    }
+
+    /**
+     * Forget all recorded statistics and re-read the slow-query threshold
+     */
+    public static void reset() {
+        SHAPES.clear();
+        slowQueryNanos = -1;
+    }
+
+    /**
+     * Write the top entries as text
+     * @param out The destination
+     * @param limit Maximum number of shapes to write
+     */
+    public static void dump(Writer out, int limit) {
+        PrintWriter writer = new PrintWriter(out);
+        writer.println("Query statistics, " + new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(new Date()));
+        writer.println();
+
+        int count = 0;
+        for (Entry entry : snapshot()) {
+            if (count++ >= limit) {
+                break;
+            }
+            writer.println(entry);
+            writer.println("    " + entry.getSql());
+        }
+        writer.flush();
+    }
+
+    /**
+     * Write the top entries to a file, replacing its contents
+     * @return true if the file was written
+     */
+    public static boolean dump(File file, int limit) {
+        try (FileWriter writer = new FileWriter(file)) {
+            dump(writer, limit);
+            return true;
+        } catch (IOException e) {
+            System.err.println("Error writing query statistics: " + e.getMessage());
+            return false;
+        }
+    }
+
+    private static long getSlowQueryNanos() {
+        long nanos = slowQueryNanos;
+        if (nanos < 0) {
+            nanos = AppConfig.getInt("db.slowQueryMillis", 200) * 1_000_000L;
+            slowQueryNanos = nanos;
+        }
+        return nanos;
+    }
+
+    private static int bucketOf(long elapsedNanos) {
+        long millis = elapsedNanos / 1_000_000;
+        for (int i = 0; i < BUCKET_MILLIS.length; i++) {
+            if (millis < BUCKET_MILLIS[i]) {
+                return i;
+            }
+        }
+        return BUCKET_MILLIS.length;
+    }
+
+    /**
+     * Live counters for one statement shape
+     */
+    private static class Shape {
+        final String sql;
+        final LongAdder calls = new LongAdder();
+        final LongAdder errors = new LongAdder();
+        final LongAdder rows = new LongAdder();
+        final LongAdder totalNanos = new LongAdder();
+        final AtomicLong maxNanos = new AtomicLong();
+        final AtomicLongArray histogram = new AtomicLongArray(BUCKET_MILLIS.length + 1);
+
+        Shape(String sql) {
+            this.sql = sql;
+        }
+
+        void add(long elapsedNanos, long rowCount, boolean failed) {
+            calls.increment();
+            if (failed) {
+                errors.increment();
+            }
+            rows.add(rowCount);
+            totalNanos.add(elapsedNanos);
+            maxNanos.accumulateAndGet(elapsedNanos, Math::max);
+            histogram.incrementAndGet(bucketOf(elapsedNanos));
+        }
+
+        Entry toEntry() {
+            long[] buckets = new long[histogram.length()];
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] = histogram.get(i);
+            }
+            return new Entry(sql, calls.sum(), errors.sum(), rows.sum(), totalNanos.sum(), maxNanos.get(), buckets);
+        }
+    }
+
+    /**
+     * Point-in-time statistics of one statement shape
+     */
+    public static class Entry {
+        private final String sql;
+        private final long calls;
+        private final long errors;
+        private final long rows;
+        private final long totalNanos;
+        private final long maxNanos;
+        private final long[] histogram;
+
+        Entry(String sql, long calls, long errors, long rows, long totalNanos, long maxNanos, long[] histogram) {
+            this.sql = sql;
+            this.calls = calls;
+            this.errors = errors;
+            this.rows = rows;
+            this.totalNanos = totalNanos;
+            this.maxNanos = maxNanos;
+            this.histogram = histogram;
+        }
+
+        public String getSql() {
+            return sql;
+        }
+
+        public long getCalls() {
+            return calls;
+        }
+
+        public long getErrors() {
+            return errors;
+        }
+
+        public long getRows() {
+            return rows;
+        }
+
+        public long getTotalNanos() {
+            return totalNanos;
+        }
+
+        public double getTotalMillis() {
+            return totalNanos / 1e6;
+        }
+
+        public double getMeanMillis() {
+            return calls == 0 ? 0 : totalNanos / 1e6 / calls;
+        }
+
+        public double getMaxMillis() {
+            return maxNanos / 1e6;
+        }
+
+        /**
+         * Call counts per latency bucket, see {@link QueryStats#BUCKET_MILLIS}
+         */
+        public long[] getHistogram() {
+            return histogram.clone();
+        }
+
+        /**
+         * Upper bound of the bucket holding the given percentile, in milliseconds;
+         * -1 when it falls in the open last bucket
+         */
+        public long getPercentileMillis(double percentile) {
+            long target = (long) Math.ceil(calls * percentile / 100.0);
+            long seen = 0;
+            for (int i = 0; i < BUCKET_MILLIS.length; i++) {
+                seen += histogram[i];
+                if (seen >= target) {
+                    return BUCKET_MILLIS[i];
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        public String toString() {
+            long p95 = getPercentileMillis(95);
+            return String.format("calls=%d errors=%d rows=%d total=%.1fms mean=%.2fms max=%.1fms p95%s",
+                    calls, errors, rows, getTotalMillis(), getMeanMillis(), getMaxMillis(),
+                    p95 < 0 ? ">=" + BUCKET_MILLIS[BUCKET_MILLIS.length - 1] + "ms" : "<" + p95 + "ms");
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package util;
+
+import java.sql.SQLException;
+
+/**
+ * Sales rollup tables read by the dashboard charts instead of the full order
+ * history:
+ * <ul>
+ *   <li>SalesDaily: order count and revenue per order day</li>
+ *   <li>ProductSales: quantity and revenue per product (sales by supplier joins it with Product)</li>
+ *   <li>CustomerOrders: order count per customer</li>
+ *   <li>StatusMonthly: order count per month and status</li>
+ * </ul>
+ *
+ * OrderController keeps the rollups current in the same transaction as the order
+ * change: {@link #removeOrder(int)} before an order is changed or deleted and
+ * {@link #addOrder(int)} after it is written. Both read the stored rows, so the
+ * rollups always match what is in the database. {@link #rebuild()} recomputes
+ * everything, e.g. after importing rows with plain SQL.
+ */
+public class SalesRollup {
+
+    /** Recompute every rollup from "Order" and OrderItem */
+    public static final String[] REBUILD_SQL = {
+        "DELETE FROM SalesDaily",
+        "DELETE FROM ProductSales",
+        "DELETE FROM CustomerOrders",
+        "DELETE FROM StatusMonthly",
+        "INSERT INTO SalesDaily (day, order_count, revenue) " +
+            "SELECT order_day, COUNT(*), TOTAL(total_amount) FROM \"Order\" " +
+            "WHERE order_day IS NOT NULL GROUP BY order_day",
+        "INSERT INTO ProductSales (product_id, quantity, revenue) " +
+            "SELECT product_id, SUM(quantity), TOTAL(quantity * unit_price) FROM OrderItem GROUP BY product_id",
+        "INSERT INTO CustomerOrders (customer_id, order_count) " +
+            "SELECT customer_id, COUNT(*) FROM \"Order\" WHERE customer_id IS NOT NULL GROUP BY customer_id",
+        "INSERT INTO StatusMonthly (month, status, order_count) " +
+            "SELECT strftime('%Y-%m', order_date), status, COUNT(*) FROM \"Order\" GROUP BY 1, 2"
+    };
+
+    // Each statement adds the sign (+1 or -1) times one order's contribution
+    private static final String SALES_DAILY_SQL =
+        "INSERT INTO SalesDaily (day, order_count, revenue) " +
+        "SELECT order_day, ?, ? * total_amount FROM \"Order\" WHERE id = ? AND order_day IS NOT NULL " +
+        "ON CONFLICT(day) DO UPDATE SET order_count = order_count + excluded.order_count, " +
+        "revenue = revenue + excluded.revenue";
+
+    private static final String PRODUCT_SALES_SQL =
+        "INSERT INTO ProductSales (product_id, quantity, revenue) " +
+        "SELECT product_id, ? * SUM(quantity), ? * TOTAL(quantity * unit_price) FROM OrderItem " +
+        "WHERE order_id = ? GROUP BY product_id " +
+        "ON CONFLICT(product_id) DO UPDATE SET quantity = quantity + excluded.quantity, " +
+        "revenue = revenue + excluded.revenue";
+
+    private static final String CUSTOMER_ORDERS_SQL =
+        "INSERT INTO CustomerOrders (customer_id, order_count) " +
+        "SELECT customer_id, ? FROM \"Order\" WHERE id = ? AND customer_id IS NOT NULL " +
+        "ON CONFLICT(customer_id) DO UPDATE SET order_count = order_count + excluded.order_count";
+
+    private static final String STATUS_MONTHLY_SQL =
+        "INSERT INTO StatusMonthly (month, status, order_count) " +
+        "SELECT strftime('%Y-%m', order_date), status, ? FROM \"Order\" WHERE id = ? " +
+        "ON CONFLICT(month, status) DO UPDATE SET order_count = order_count + excluded.order_count";
+
+    /**
+     * Add a stored order and its items to the rollups. Must run in the
+     * transaction that wrote the order.
+     */
+    public static void addOrder(int orderId) throws SQLException {
+        apply(orderId, 1);
+    }
+
+    /**
+     * Take a stored order and its items out of the rollups, before the order is
+     * changed or deleted. Must run in the transaction that changes the order.
+     */
+    public static void removeOrder(int orderId) throws SQLException {
+        apply(orderId, -1);
+    }
+
+    private static void apply(int orderId, int sign) throws SQLException {
+        DataUtil.inTransaction(conn -> {
+            DataUtil.executeUpdate(SALES_DAILY_SQL, sign, sign, orderId);
+            DataUtil.executeUpdate(PRODUCT_SALES_SQL, sign, sign, orderId);
+            DataUtil.executeUpdate(CUSTOMER_ORDERS_SQL, sign, orderId);
+            DataUtil.executeUpdate(STATUS_MONTHLY_SQL, sign, orderId);
+            return null;
+        });
+    }
+
+    /**
+     * Recompute all rollups from the order history
+     * @return true if the rollups were rebuilt
+     */
+    public static boolean rebuild() {
+        try {
+            rebuildInTransaction();
+            return true;
+        } catch (SQLException e) {
+            System.err.println("Error rebuilding sales rollups: " + e.getMessage());
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * Recompute all rollups, joining the caller's transaction if one is open
+     */
+    public static void rebuildInTransaction() throws SQLException {
+        DataUtil.inTransaction(conn -> {
+            for (String sql : REBUILD_SQL) {
+                DataUtil.executeUpdate(sql);
+            }
+            return null;
+        });
+    }
+}
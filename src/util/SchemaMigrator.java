@@ -0,0 +1,364 @@
+package util;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Numbered schema migrations tracked with SQLite's "PRAGMA user_version".
+ *
+ * Each migration runs once, in its own transaction together with the version
+ * bump, so a failed step leaves the database at the previous version. When the
+ * stored version already matches the latest migration, startup only reads the
+ * pragma.
+ *
+ * New schema changes are appended to {@link #MIGRATIONS} with the next version
+ * number; released migrations must never be edited.
+ */
+public class SchemaMigrator {
+    private static final String SCHEMA_FILE = "resources/schema.sql";
+
+    // Local day number of the current date, for use inside triggers
+    private static final String TODAY_SQL = DayNumber.sqlExpression("'now', 'localtime'");
+
+    private static final List<Migration> MIGRATIONS = Arrays.asList(
+        // Base tables, as shipped in schema.sql before migrations existed
+        Migration.fromFile(1, "Base schema", SCHEMA_FILE),
+
+        // Indexes for the order, adjustment and product joins and date filters
+        Migration.of(2, "Indexes for joins and date filters",
+            "CREATE INDEX IF NOT EXISTS idx_orderitem_order ON OrderItem(order_id)",
+            "CREATE INDEX IF NOT EXISTS idx_orderitem_product ON OrderItem(product_id)",
+            "CREATE INDEX IF NOT EXISTS idx_order_date ON \"Order\"(order_date)",
+            "CREATE INDEX IF NOT EXISTS idx_order_customer ON \"Order\"(customer_id, order_date)",
+            "CREATE INDEX IF NOT EXISTS idx_order_status ON \"Order\"(status)",
+            "CREATE INDEX IF NOT EXISTS idx_adjustment_product ON InventoryAdjustment(product_id, date)",
+            "CREATE INDEX IF NOT EXISTS idx_adjustment_date ON InventoryAdjustment(date)",
+            "CREATE INDEX IF NOT EXISTS idx_product_category ON Product(category_id)",
+            "CREATE INDEX IF NOT EXISTS idx_product_supplier ON Product(supplier_id)",
+            "ANALYZE"),
+
+        // Integer day numbers shadowing the date text, kept current by triggers, so
+        // date filters become index range scans instead of date() on every row
+        Migration.of(3, "Day-number columns for order and adjustment dates",
+            "ALTER TABLE \"Order\" ADD COLUMN order_day INTEGER",
+            "UPDATE \"Order\" SET order_day = " + DayNumber.sqlExpression("order_date"),
+            "CREATE INDEX IF NOT EXISTS idx_order_day ON \"Order\"(order_day)",
+            "CREATE TRIGGER IF NOT EXISTS trg_order_day_insert AFTER INSERT ON \"Order\" BEGIN "
+                + "UPDATE \"Order\" SET order_day = " + DayNumber.sqlExpression("NEW.order_date")
+                + " WHERE id = NEW.id; END",
+            "CREATE TRIGGER IF NOT EXISTS trg_order_day_update AFTER UPDATE OF order_date ON \"Order\" BEGIN "
+                + "UPDATE \"Order\" SET order_day = " + DayNumber.sqlExpression("NEW.order_date")
+                + " WHERE id = NEW.id; END",
+            "ALTER TABLE InventoryAdjustment ADD COLUMN adj_day INTEGER",
+            "UPDATE InventoryAdjustment SET adj_day = " + DayNumber.sqlExpression("date"),
+            "CREATE INDEX IF NOT EXISTS idx_adjustment_day ON InventoryAdjustment(adj_day)",
+            "CREATE TRIGGER IF NOT EXISTS trg_adjustment_day_insert AFTER INSERT ON InventoryAdjustment BEGIN "
+                + "UPDATE InventoryAdjustment SET adj_day = " + DayNumber.sqlExpression("NEW.date")
+                + " WHERE id = NEW.id; END",
+            "CREATE TRIGGER IF NOT EXISTS trg_adjustment_day_update AFTER UPDATE OF date ON InventoryAdjustment BEGIN "
+                + "UPDATE InventoryAdjustment SET adj_day = " + DayNumber.sqlExpression("NEW.date")
+                + " WHERE id = NEW.id; END"),
+
+        // Sales rollups maintained with each order change, see SalesRollup
+        Migration.of(4, "Sales rollup tables",
+            "CREATE TABLE IF NOT EXISTS SalesDaily (day INTEGER PRIMARY KEY, "
+                + "order_count INTEGER NOT NULL DEFAULT 0, revenue REAL NOT NULL DEFAULT 0)",
+            "CREATE TABLE IF NOT EXISTS ProductSales (product_id INTEGER PRIMARY KEY, "
+                + "quantity INTEGER NOT NULL DEFAULT 0, revenue REAL NOT NULL DEFAULT 0)",
+            "CREATE TABLE IF NOT EXISTS CustomerOrders (customer_id INTEGER PRIMARY KEY, "
+                + "order_count INTEGER NOT NULL DEFAULT 0)",
+            "CREATE TABLE IF NOT EXISTS StatusMonthly (month TEXT NOT NULL, status TEXT NOT NULL, "
+                + "order_count INTEGER NOT NULL DEFAULT 0, PRIMARY KEY (month, status))",
+            // Fill the rollups from the orders already recorded
+            "DELETE FROM SalesDaily",
+            "DELETE FROM ProductSales",
+            "DELETE FROM CustomerOrders",
+            "DELETE FROM StatusMonthly",
+            "INSERT INTO SalesDaily (day, order_count, revenue) "
+                + "SELECT order_day, COUNT(*), TOTAL(total_amount) FROM \"Order\" "
+                + "WHERE order_day IS NOT NULL GROUP BY order_day",
+            "INSERT INTO ProductSales (product_id, quantity, revenue) "
+                + "SELECT product_id, SUM(quantity), TOTAL(quantity * unit_price) FROM OrderItem GROUP BY product_id",
+            "INSERT INTO CustomerOrders (customer_id, order_count) "
+                + "SELECT customer_id, COUNT(*) FROM \"Order\" WHERE customer_id IS NOT NULL GROUP BY customer_id",
+            "INSERT INTO StatusMonthly (month, status, order_count) "
+                + "SELECT strftime('%Y-%m', order_date), status, COUNT(*) FROM \"Order\" GROUP BY 1, 2"),
+
+        // Append-only stock ledger written by triggers on every stock_qty change,
+        // with end-of-day checkpoints, see StockLedger
+        Migration.of(5, "Stock movement ledger and checkpoints",
+            "CREATE TABLE IF NOT EXISTS StockMovement (id INTEGER PRIMARY KEY AUTOINCREMENT, "
+                + "product_id INTEGER NOT NULL, day INTEGER NOT NULL, moved_at TEXT NOT NULL, "
+                + "change_qty INTEGER NOT NULL, balance_after INTEGER NOT NULL, "
+                + "FOREIGN KEY (product_id) REFERENCES Product(id) ON DELETE CASCADE)",
+            "CREATE INDEX IF NOT EXISTS idx_movement_product_day ON StockMovement(product_id, day)",
+            "CREATE INDEX IF NOT EXISTS idx_movement_day ON StockMovement(day)",
+            "CREATE TABLE IF NOT EXISTS StockCheckpoint (product_id INTEGER NOT NULL, day INTEGER NOT NULL, "
+                + "balance INTEGER NOT NULL, PRIMARY KEY (product_id, day), "
+                + "FOREIGN KEY (product_id) REFERENCES Product(id) ON DELETE CASCADE)",
+            "CREATE INDEX IF NOT EXISTS idx_checkpoint_day ON StockCheckpoint(day)",
+            // Opening balances: stock on hand before the ledger existed
+            "INSERT INTO StockMovement (product_id, day, moved_at, change_qty, balance_after) "
+                + "SELECT id, 0, datetime('now', 'localtime'), stock_qty, stock_qty FROM Product",
+            "INSERT INTO StockCheckpoint (product_id, day, balance) SELECT id, 0, stock_qty FROM Product",
+            "CREATE TRIGGER IF NOT EXISTS trg_stock_movement_insert AFTER INSERT ON Product "
+                + "WHEN NEW.stock_qty <> 0 BEGIN "
+                + "INSERT INTO StockMovement (product_id, day, moved_at, change_qty, balance_after) "
+                + "VALUES (NEW.id, " + TODAY_SQL + ", datetime('now', 'localtime'), NEW.stock_qty, NEW.stock_qty); END",
+            "CREATE TRIGGER IF NOT EXISTS trg_stock_movement_update AFTER UPDATE OF stock_qty ON Product "
+                + "WHEN NEW.stock_qty <> OLD.stock_qty BEGIN "
+                + "INSERT INTO StockMovement (product_id, day, moved_at, change_qty, balance_after) "
+                + "VALUES (NEW.id, " + TODAY_SQL + ", datetime('now', 'localtime'), "
+                + "NEW.stock_qty - OLD.stock_qty, NEW.stock_qty); END"),
+
+        // Background report jobs and their progress, see ReportController
+        Migration.of(6, "Report job queue",
+            "CREATE TABLE IF NOT EXISTS ReportJob (id INTEGER PRIMARY KEY AUTOINCREMENT, "
+                + "report_type TEXT NOT NULL, format TEXT NOT NULL, parameters TEXT, "
+                + "status TEXT NOT NULL, rows_done INTEGER NOT NULL DEFAULT 0, "
+                + "rows_total INTEGER NOT NULL DEFAULT -1, report_id INTEGER, error TEXT, "
+                + "queued_on TEXT NOT NULL, started_on TEXT, finished_on TEXT, "
+                + "FOREIGN KEY (report_id) REFERENCES Report(id) ON DELETE SET NULL)",
+            "CREATE INDEX IF NOT EXISTS idx_reportjob_status ON ReportJob(status)"),
+
+        // Fingerprints of report output, so unchanged reports are reused
+        Migration.of(7, "Report fingerprints",
+            "ALTER TABLE Report ADD COLUMN fingerprint TEXT",
+            "CREATE INDEX IF NOT EXISTS idx_report_fingerprint ON Report(fingerprint)"),
+
+        // Keep the stock ledger when a product is deleted: rebuild StockMovement and
+        // StockCheckpoint without the cascading foreign key, and close the deleted
+        // product's balance with a final movement. The Product triggers name
+        // StockMovement, so they are dropped for the rebuild and created again.
+        Migration.of(8, "Keep stock ledger history of deleted products",
+            "DROP TRIGGER IF EXISTS trg_stock_movement_insert",
+            "DROP TRIGGER IF EXISTS trg_stock_movement_update",
+            "CREATE TABLE StockMovement_new (id INTEGER PRIMARY KEY AUTOINCREMENT, "
+                + "product_id INTEGER NOT NULL, day INTEGER NOT NULL, moved_at TEXT NOT NULL, "
+                + "change_qty INTEGER NOT NULL, balance_after INTEGER NOT NULL)",
+            "INSERT INTO StockMovement_new (id, product_id, day, moved_at, change_qty, balance_after) "
+                + "SELECT id, product_id, day, moved_at, change_qty, balance_after FROM StockMovement",
+            "DROP TABLE StockMovement",
+            "ALTER TABLE StockMovement_new RENAME TO StockMovement",
+            "CREATE INDEX IF NOT EXISTS idx_movement_product_day ON StockMovement(product_id, day)",
+            "CREATE INDEX IF NOT EXISTS idx_movement_day ON StockMovement(day)",
+            "CREATE TABLE StockCheckpoint_new (product_id INTEGER NOT NULL, day INTEGER NOT NULL, "
+                + "balance INTEGER NOT NULL, PRIMARY KEY (product_id, day))",
+            "INSERT INTO StockCheckpoint_new (product_id, day, balance) "
+                + "SELECT product_id, day, balance FROM StockCheckpoint",
+            "DROP TABLE StockCheckpoint",
+            "ALTER TABLE StockCheckpoint_new RENAME TO StockCheckpoint",
+            "CREATE INDEX IF NOT EXISTS idx_checkpoint_day ON StockCheckpoint(day)",
+            "CREATE TRIGGER IF NOT EXISTS trg_stock_movement_insert AFTER INSERT ON Product "
+                + "WHEN NEW.stock_qty <> 0 BEGIN "
+                + "INSERT INTO StockMovement (product_id, day, moved_at, change_qty, balance_after) "
+                + "VALUES (NEW.id, " + TODAY_SQL + ", datetime('now', 'localtime'), NEW.stock_qty, NEW.stock_qty); END",
+            "CREATE TRIGGER IF NOT EXISTS trg_stock_movement_update AFTER UPDATE OF stock_qty ON Product "
+                + "WHEN NEW.stock_qty <> OLD.stock_qty BEGIN "
+                + "INSERT INTO StockMovement (product_id, day, moved_at, change_qty, balance_after) "
+                + "VALUES (NEW.id, " + TODAY_SQL + ", datetime('now', 'localtime'), "
+                + "NEW.stock_qty - OLD.stock_qty, NEW.stock_qty); END",
+            "CREATE TRIGGER IF NOT EXISTS trg_stock_movement_delete AFTER DELETE ON Product "
+                + "WHEN OLD.stock_qty <> 0 BEGIN "
+                + "INSERT INTO StockMovement (product_id, day, moved_at, change_qty, balance_after) "
+                + "VALUES (OLD.id, " + TODAY_SQL + ", datetime('now', 'localtime'), -OLD.stock_qty, 0); END"),
+
+        // Change counters of the tables reports read, bumped by triggers on every
+        // row written, so any process can tell whether a report's data changed
+        Migration.of(9, "Table versions for report reuse",
+            tableVersionSql("Product", "Category", "Supplier", "Customer", "Order", "OrderItem", "ProductSales")),
+
+        // Owners of report jobs and their heartbeats, so an instance of the
+        // application only recovers jobs whose owner has stopped, see ReportController
+        Migration.of(10, "Report job owners",
+            "ALTER TABLE ReportJob ADD COLUMN owner TEXT",
+            "CREATE TABLE IF NOT EXISTS ReportWorker (owner TEXT PRIMARY KEY, heartbeat INTEGER NOT NULL)")
+    );
+
+    /**
+     * Bring the database up to the latest version
+     * @param conn The writer connection, in auto-commit mode
+     * @return true if the schema is at the latest version afterwards
+     */
+    public static boolean migrate(Connection conn) {
+        try {
+            int current = getVersion(conn);
+            int latest = getLatestVersion();
+            if (current >= latest) {
+                return true;
+            }
+
+            for (Migration migration : MIGRATIONS) {
+                if (migration.version <= current) {
+                    continue;
+                }
+
+                System.out.println("Applying schema migration " + migration.version + ": " + migration.description);
+                if (!apply(conn, migration)) {
+                    return false;
+                }
+                current = migration.version;
+            }
+
+            System.out.println("Database schema migrated to version " + current + ".");
+            return true;
+        } catch (SQLException e) {
+            System.err.println("Error reading schema version: " + e.getMessage());
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * Get the schema version stored in the database
+     */
+    public static int getVersion(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("PRAGMA user_version")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    /**
+     * Get the version the application expects
+     */
+    public static int getLatestVersion() {
+        return MIGRATIONS.get(MIGRATIONS.size() - 1).version;
+    }
+
+    private static boolean apply(Connection conn, Migration migration) {
+        String current = null;
+        try {
+            List<String> statements = migration.statements();
+
+            conn.setAutoCommit(false);
+            try (Statement stmt = conn.createStatement()) {
+                for (String sql : statements) {
+                    current = sql;
+                    stmt.execute(sql);
+                }
+                current = null;
+                stmt.execute("PRAGMA user_version = " + migration.version);
+            }
+            conn.commit();
+            return true;
+        } catch (IOException e) {
+            System.err.println("Error reading migration " + migration.version + ": " + e.getMessage());
+            e.printStackTrace();
+            return false;
+        } catch (SQLException e) {
+            System.err.println("Error applying migration " + migration.version + ": " + e.getMessage());
+            if (current != null) {
+                System.err.println("Failed statement: " + current);
+            }
+            try {
+                conn.rollback();
+            } catch (SQLException ex) {
+                System.err.println("Error rolling back migration: " + ex.getMessage());
+            }
+            return false;
+        } finally {
+            try {
+                conn.setAutoCommit(true);
+            } catch (SQLException e) {
+                System.err.println("Error resetting auto-commit: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * The TableVersion table with one row per table, and insert, update and
+     * delete triggers bumping it. Used by migration 9; a later change to the
+     * tables tracked belongs in a new migration, not here.
+     */
+    private static String[] tableVersionSql(String... tables) {
+        List<String> statements = new ArrayList<>();
+        statements.add("CREATE TABLE IF NOT EXISTS TableVersion (table_name TEXT PRIMARY KEY, "
+                + "version INTEGER NOT NULL DEFAULT 0)");
+        for (String table : tables) {
+            statements.add("INSERT OR IGNORE INTO TableVersion (table_name) VALUES ('" + table + "')");
+            for (String event : new String[] {"INSERT", "UPDATE", "DELETE"}) {
+                statements.add("CREATE TRIGGER IF NOT EXISTS trg_version_" + table.toLowerCase() + "_"
+                        + event.toLowerCase() + " AFTER " + event + " ON \"" + table + "\" BEGIN "
+                        + "UPDATE TableVersion SET version = version + 1 WHERE table_name = '" + table + "'; END");
+            }
+        }
+        return statements.toArray(new String[0]);
+    }
+
+    /**
+     * Split a SQL script into statements. Statements end with a line ending in a
+     * semicolon; whole-line "--" comments are skipped.
+     */
+    static List<String> splitStatements(BufferedReader reader) throws IOException {
+        List<String> statements = new ArrayList<>();
+        StringBuilder currentStatement = new StringBuilder();
+        String line;
+
+        while ((line = reader.readLine()) != null) {
+            if (line.trim().startsWith("--")) {
+                continue;
+            }
+
+            currentStatement.append(line).append(" ");
+            if (line.trim().endsWith(";")) {
+                String sql = currentStatement.toString().trim();
+                if (!sql.equals(";")) {
+                    statements.add(sql);
+                }
+                currentStatement = new StringBuilder();
+            }
+        }
+
+        String rest = currentStatement.toString().trim();
+        if (!rest.isEmpty()) {
+            statements.add(rest);
+        }
+        return statements;
+    }
+
+    /**
+     * One schema step: either a fixed list of statements or a SQL script file
+     */
+    private static class Migration {
+        final int version;
+        final String description;
+        final String[] sql;
+        final String file;
+
+        private Migration(int version, String description, String[] sql, String file) {
+            this.version = version;
+            this.description = description;
+            this.sql = sql;
+            this.file = file;
+        }
+
+        static Migration of(int version, String description, String... sql) {
+            return new Migration(version, description, sql, null);
+        }
+
+        static Migration fromFile(int version, String description, String file) {
+            return new Migration(version, description, null, file);
+        }
+
+        List<String> statements() throws IOException {
+            if (file == null) {
+                return Arrays.asList(sql);
+            }
+
+            String path = new File(".").getCanonicalPath() + "/" + file;
+            try (BufferedReader reader = new BufferedReader(new FileReader(path))) {
+                return splitStatements(reader);
+            }
+        }
+    }
+}
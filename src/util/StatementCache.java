@@ -0,0 +1,149 @@
+package util;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded LRU cache of prepared statements for one connection, keyed by SQL text.
+ *
+ * Statements are checked out with {@link #acquire} and handed back with
+ * {@link #release}, so a statement is never shared by two threads at once; a
+ * second caller asking for the same SQL while it is checked out simply gets a new
+ * statement. Statements pushed out of the cache are closed. SQL prepared for the
+ * first time is handed to {@link QueryPlanAuditor} when plan auditing is enabled.
+ */
+public class StatementCache {
+    private final Connection conn;
+    private final int capacity;
+    private final LinkedHashMap<String, PreparedStatement> idle = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    private boolean closed;
+
+    public StatementCache(Connection conn, int capacity) {
+        this.conn = conn;
+        this.capacity = capacity;
+    }
+
+    /**
+     * Take a prepared statement for the SQL out of the cache, preparing it on a miss
+     * @param sql The SQL text
+     * @param returnGeneratedKeys Whether the statement must return generated keys
+     */
+    public PreparedStatement acquire(String sql, boolean returnGeneratedKeys) throws SQLException {
+        String key = key(sql, returnGeneratedKeys);
+
+        synchronized (this) {
+            PreparedStatement stmt = idle.remove(key);
+            if (stmt != null) {
+                hits.incrementAndGet();
+                return stmt;
+            }
+        }
+
+        misses.incrementAndGet();
+        QueryPlanAuditor.check(conn, sql);
+        return returnGeneratedKeys
+                ? conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)
+                : conn.prepareStatement(sql);
+    }
+
+    /**
+     * Hand a statement back after use. Pass reusable = false after an error so the
+     * statement is closed instead of cached.
+     */
+    public void release(String sql, boolean returnGeneratedKeys, PreparedStatement stmt, boolean reusable) {
+        if (stmt == null) {
+            return;
+        }
+
+        List<PreparedStatement> toClose = new ArrayList<>();
+
+        if (reusable && capacity > 0) {
+            try {
+                stmt.clearParameters();
+            } catch (SQLException e) {
+                reusable = false;
+            }
+        }
+
+        synchronized (this) {
+            String key = key(sql, returnGeneratedKeys);
+            if (!reusable || closed || capacity <= 0 || idle.containsKey(key)) {
+                toClose.add(stmt);
+            } else {
+                idle.put(key, stmt);
+
+                // Evict least recently used statements beyond the capacity
+                Iterator<Map.Entry<String, PreparedStatement>> it = idle.entrySet().iterator();
+                while (idle.size() > capacity && it.hasNext()) {
+                    toClose.add(it.next().getValue());
+                    it.remove();
+                    evictions.incrementAndGet();
+                }
+            }
+        }
+
+        closeAll(toClose);
+    }
+
+    /**
+     * Close every cached statement; later releases close their statement directly
+     */
+    public void close() {
+        List<PreparedStatement> toClose;
+        synchronized (this) {
+            closed = true;
+            toClose = new ArrayList<>(idle.values());
+            idle.clear();
+        }
+        closeAll(toClose);
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    public synchronized int size() {
+        return idle.size();
+    }
+
+    @Override
+    public String toString() {
+        return "StatementCache[size=" + size() + ", hits=" + hits + ", misses=" + misses
+                + ", evictions=" + evictions + "]";
+    }
+
+    private static String key(String sql, boolean returnGeneratedKeys) {
+        return returnGeneratedKeys ? "K:" + sql : sql;
+    }
+
+    private static void closeAll(List<PreparedStatement> statements) {
+        for (PreparedStatement stmt : statements) {
+            try {
+                stmt.close();
+            } catch (SQLException e) {
+                System.err.println("Error closing cached statement: " + e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package util;
+
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Point-in-time stock levels from the StockMovement ledger.
+ *
+ * Triggers on Product append a movement (change and balance after it) whenever
+ * stock_qty changes, whatever the cause: orders, adjustments, product edits or
+ * imports. StockCheckpoint holds end-of-day balances per product, so the stock on
+ * a day is the latest checkpoint on or before it plus the movements after that
+ * checkpoint, instead of a walk over the whole history.
+ *
+ * Products that existed before the ledger start with an opening movement and
+ * checkpoint on day 0 holding their stock at that time.
+ */
+public class StockLedger {
+    private static final long CHECKPOINT_CHECK_MINUTES = 60;
+
+    private static ScheduledExecutorService checkpointTimer;
+
+    // Latest checkpoint on or before the day, plus the movements after it up to the day
+    private static final String PRODUCT_STOCK_AT_SQL =
+        "SELECT COALESCE((SELECT balance FROM StockCheckpoint WHERE product_id = ? AND day <= ? " +
+        "ORDER BY day DESC LIMIT 1), 0) + " +
+        "(SELECT TOTAL(change_qty) FROM StockMovement WHERE product_id = ? AND day <= ? " +
+        "AND day > COALESCE((SELECT MAX(day) FROM StockCheckpoint WHERE product_id = ? AND day <= ?), -1))";
+
+    // The same for all products at once
+    private static final String TOTAL_STOCK_AT_SQL =
+        "SELECT (SELECT TOTAL(c.balance) FROM StockCheckpoint c WHERE c.day = " +
+        "(SELECT MAX(c2.day) FROM StockCheckpoint c2 WHERE c2.product_id = c.product_id AND c2.day <= ?)) + " +
+        "(SELECT TOTAL(m.change_qty) FROM StockMovement m WHERE m.day <= ? " +
+        "AND m.day > COALESCE((SELECT MAX(c.day) FROM StockCheckpoint c " +
+        "WHERE c.product_id = m.product_id AND c.day <= ?), -1))";
+
+    // End-of-day balance of every product moved since its last checkpoint
+    private static final String CHECKPOINT_SQL =
+        "INSERT OR REPLACE INTO StockCheckpoint (product_id, day, balance) " +
+        "SELECT p.id, ?, p.stock_qty - (SELECT TOTAL(m.change_qty) FROM StockMovement m " +
+        "WHERE m.product_id = p.id AND m.day > ?) " +
+        "FROM Product p WHERE EXISTS (SELECT 1 FROM StockMovement m WHERE m.product_id = p.id " +
+        "AND m.day <= ? AND m.day > COALESCE((SELECT MAX(c.day) FROM StockCheckpoint c " +
+        "WHERE c.product_id = p.id), -1))";
+
+    /**
+     * Stock of one product at the end of a day
+     */
+    public static int stockAt(int productId, LocalDate date) {
+        long day = DayNumber.of(date);
+        Object result = DataUtil.queryScalar(PRODUCT_STOCK_AT_SQL, productId, day, productId, day, productId, day);
+        return result == null ? 0 : ((Number) result).intValue();
+    }
+
+    /**
+     * Total stock of all products at the end of a day
+     */
+    public static double totalStockAt(LocalDate date) {
+        long day = DayNumber.of(date);
+        Object result = DataUtil.queryScalar(TOTAL_STOCK_AT_SQL, day, day, day);
+        return result == null ? 0.0 : ((Number) result).doubleValue();
+    }
+
+    /**
+     * Total stock at the end of each day of a range: one balance lookup for the
+     * day before the range, then the daily movement sums added up in order
+     * @param from First day (inclusive)
+     * @param to Last day (inclusive)
+     */
+    public static Map<LocalDate, Double> dailyTotals(LocalDate from, LocalDate to) {
+        double balance = totalStockAt(from.minusDays(1));
+        Map<LocalDate, Double> changes = TimeBuckets.aggregate("StockMovement", "day", "TOTAL(change_qty)",
+                TimeBuckets.Granularity.DAY, from, to);
+
+        Map<LocalDate, Double> totals = new LinkedHashMap<>();
+        for (Map.Entry<LocalDate, Double> day : changes.entrySet()) {
+            balance += day.getValue();
+            totals.put(day.getKey(), balance);
+        }
+        return totals;
+    }
+
+    /**
+     * Write end-of-day checkpoints for yesterday for every product that moved
+     * since its last checkpoint. Today is left out because it is not over yet.
+     * @return The number of checkpoints written, or -1 on error
+     */
+    public static int checkpoint() {
+        long yesterday = DayNumber.daysAgo(1);
+        try {
+            return DataUtil.executeUpdate(CHECKPOINT_SQL, yesterday, yesterday, yesterday);
+        } catch (SQLException e) {
+            System.err.println("Error writing stock checkpoints: " + e.getMessage());
+            e.printStackTrace();
+            return -1;
+        }
+    }
+
+    /**
+     * Write checkpoints if none has been written for yesterday yet; cheap when
+     * they are up to date
+     */
+    public static void checkpointIfDue() {
+        Object last = DataUtil.queryScalar("SELECT MAX(day) FROM StockCheckpoint");
+        if (last == null || ((Number) last).longValue() < DayNumber.daysAgo(1)) {
+            checkpoint();
+        }
+    }
+
+    /**
+     * Run {@link #checkpointIfDue()} now and then every hour in the background,
+     * so a session left open past midnight still checkpoints the day that ended
+     */
+    public static synchronized void scheduleCheckpoints() {
+        if (checkpointTimer == null) {
+            checkpointTimer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "stock-checkpoint");
+                thread.setDaemon(true);
+                return thread;
+            });
+            // An exception escaping the task would cancel the later runs
+            checkpointTimer.scheduleWithFixedDelay(() -> {
+                try {
+                    checkpointIfDue();
+                } catch (RuntimeException e) {
+                    System.err.println("Error checking stock checkpoints: " + e.getMessage());
+                    e.printStackTrace();
+                }
+            }, 0, CHECKPOINT_CHECK_MINUTES, TimeUnit.MINUTES);
+        }
+    }
+}
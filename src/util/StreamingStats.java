@@ -0,0 +1,341 @@
+package util;
+
+import java.util.Arrays;
+
+/**
+ * Single-pass statistics over a stream of doubles: count, sum, min, max,
+ * quantiles and equal-width histograms, in bounded memory.
+ *
+ * The first values are kept exactly in a primitive array, so small tables get
+ * exact quantiles. Past {@link #EXACT_LIMIT} values they move into a quantile
+ * sketch with logarithmic buckets (as in DDSketch): every quantile is then
+ * within the relative accuracy of the true value (1% by default), whatever the
+ * number of values, and the sketch of a million order amounts is a few thousand
+ * counters. Two instances with the same accuracy can be merged, e.g. to combine
+ * partial results.
+ */
+public class StreamingStats {
+    /** Relative accuracy of quantiles once the values are sketched */
+    public static final double DEFAULT_ACCURACY = 0.01;
+
+    /** Number of values kept exactly before switching to the sketch */
+    public static final int EXACT_LIMIT = 4096;
+
+    // Magnitudes below this are counted as zero, as their log bucket is meaningless
+    private static final double MIN_INDEXABLE = 1e-9;
+
+    private final double accuracy;
+    private final double gamma;
+    private final double logGamma;
+
+    private long count;
+    private double sum;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    private double[] exact = new double[64];
+    private int exactCount;
+    private boolean sketched;
+
+    private long zeroCount;
+    private final Buckets positive = new Buckets();
+    private final Buckets negative = new Buckets();
+
+    public StreamingStats() {
+        this(DEFAULT_ACCURACY);
+    }
+
+    /**
+     * @param accuracy Relative accuracy of sketched quantiles, e.g. 0.01 for 1%
+     */
+    public StreamingStats(double accuracy) {
+        if (accuracy <= 0 || accuracy >= 1) {
+            throw new IllegalArgumentException("Accuracy must be between 0 and 1: " + accuracy);
+        }
+        this.accuracy = accuracy;
+        this.gamma = (1 + accuracy) / (1 - accuracy);
+        this.logGamma = Math.log(gamma);
+    }
+
+    /**
+     * Add one value; NaN is ignored
+     */
+    public void add(double value) {
+        if (Double.isNaN(value)) {
+            return;
+        }
+        count++;
+        sum += value;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+
+        if (!sketched) {
+            if (exactCount < EXACT_LIMIT) {
+                if (exactCount == exact.length) {
+                    exact = Arrays.copyOf(exact, Math.min(exactCount * 2, EXACT_LIMIT));
+                }
+                exact[exactCount++] = value;
+                return;
+            }
+            toSketch();
+        }
+        addToSketch(value, 1);
+    }
+
+    /**
+     * Add all values of another instance to this one
+     */
+    public void merge(StreamingStats other) {
+        if (other.accuracy != accuracy) {
+            throw new IllegalArgumentException("Cannot merge statistics of different accuracy");
+        }
+        if (other.count == 0) {
+            return;
+        }
+
+        if (!other.sketched) {
+            // Replaying the values keeps this instance exact while it can be
+            for (int i = 0; i < other.exactCount; i++) {
+                add(other.exact[i]);
+            }
+            return;
+        }
+
+        if (!sketched) {
+            toSketch();
+        }
+        count += other.count;
+        sum += other.sum;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+        zeroCount += other.zeroCount;
+        positive.merge(other.positive);
+        negative.merge(other.negative);
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getSum() {
+        return sum;
+    }
+
+    /**
+     * Smallest value, 0 when empty
+     */
+    public double getMin() {
+        return count == 0 ? 0.0 : min;
+    }
+
+    /**
+     * Largest value, 0 when empty
+     */
+    public double getMax() {
+        return count == 0 ? 0.0 : max;
+    }
+
+    public double getMean() {
+        return count == 0 ? 0.0 : sum / count;
+    }
+
+    /**
+     * Whether all values are still kept, so quantiles are exact
+     */
+    public boolean isExact() {
+        return !sketched;
+    }
+
+    /**
+     * Value at a quantile: the element of rank round(q * (count - 1)) in sorted
+     * order, so 0.5 gives the median (the upper one for an even count)
+     * @param q The quantile, from 0 to 1
+     * @return The value, or 0 when empty
+     */
+    public double quantile(double q) {
+        return quantiles(q)[0];
+    }
+
+    /**
+     * Several quantiles at once, sorting the exact values only once
+     */
+    public double[] quantiles(double... qs) {
+        double[] result = new double[qs.length];
+        if (count == 0) {
+            return result;
+        }
+
+        double[] sorted = null;
+        if (!sketched) {
+            sorted = Arrays.copyOf(exact, exactCount);
+            Arrays.sort(sorted);
+        }
+
+        for (int i = 0; i < qs.length; i++) {
+            double q = Math.max(0.0, Math.min(1.0, qs[i]));
+            long rank = (long) Math.floor(q * (count - 1) + 0.5);
+            double value = sorted != null ? sorted[(int) rank] : sketchValueAt(rank);
+            result[i] = Math.max(min, Math.min(max, value));
+        }
+        return result;
+    }
+
+    /**
+     * Count the values in equal-width bins from the minimum to the maximum; the
+     * last bin includes the maximum. Sketched values are placed by their bucket
+     * value, so bin edges are as accurate as the quantiles.
+     * @param bins The number of bins
+     */
+    public Histogram histogram(int bins) {
+        double[] edges = new double[bins + 1];
+        long[] counts = new long[bins];
+        double low = getMin();
+        double width = (getMax() - low) / bins;
+        for (int i = 0; i <= bins; i++) {
+            edges[i] = low + width * i;
+        }
+        edges[bins] = getMax();
+
+        if (!sketched) {
+            for (int i = 0; i < exactCount; i++) {
+                counts[binOf(exact[i], low, width, bins)]++;
+            }
+        } else {
+            for (int i = 0; i < negative.counts.length; i++) {
+                if (negative.counts[i] > 0) {
+                    counts[binOf(-bucketValue(negative.offset + i), low, width, bins)] += negative.counts[i];
+                }
+            }
+            if (zeroCount > 0) {
+                counts[binOf(0.0, low, width, bins)] += zeroCount;
+            }
+            for (int i = 0; i < positive.counts.length; i++) {
+                if (positive.counts[i] > 0) {
+                    counts[binOf(bucketValue(positive.offset + i), low, width, bins)] += positive.counts[i];
+                }
+            }
+        }
+        return new Histogram(edges, counts);
+    }
+
+    private static int binOf(double value, double low, double width, int bins) {
+        if (width <= 0) {
+            return 0;
+        }
+        int bin = (int) ((value - low) / width);
+        return Math.max(0, Math.min(bins - 1, bin));
+    }
+
+    private void toSketch() {
+        for (int i = 0; i < exactCount; i++) {
+            addToSketch(exact[i], 1);
+        }
+        exact = null;
+        exactCount = 0;
+        sketched = true;
+    }
+
+    private void addToSketch(double value, long n) {
+        if (Math.abs(value) < MIN_INDEXABLE) {
+            zeroCount += n;
+        } else if (value > 0) {
+            positive.add(bucketIndex(value), n);
+        } else {
+            negative.add(bucketIndex(-value), n);
+        }
+    }
+
+    // Bucket i holds magnitudes in (gamma^(i-1), gamma^i]
+    private int bucketIndex(double magnitude) {
+        return (int) Math.ceil(Math.log(magnitude) / logGamma);
+    }
+
+    // The value within the accuracy of every magnitude in the bucket
+    private double bucketValue(int index) {
+        return 2 * Math.pow(gamma, index) / (gamma + 1);
+    }
+
+    private double sketchValueAt(long rank) {
+        long seen = 0;
+        // Negative values first, largest magnitude first
+        for (int i = negative.counts.length - 1; i >= 0; i--) {
+            seen += negative.counts[i];
+            if (seen > rank) {
+                return -bucketValue(negative.offset + i);
+            }
+        }
+        seen += zeroCount;
+        if (seen > rank) {
+            return 0.0;
+        }
+        for (int i = 0; i < positive.counts.length; i++) {
+            seen += positive.counts[i];
+            if (seen > rank) {
+                return bucketValue(positive.offset + i);
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Counts per bucket index, in an array that grows to the range of indexes seen
+     */
+    private static class Buckets {
+        long[] counts = new long[0];
+        int offset;
+
+        void add(int index, long n) {
+            if (counts.length == 0) {
+                counts = new long[16];
+                offset = index - 8;
+            } else if (index < offset) {
+                int grow = Math.max(offset - index, counts.length / 2);
+                long[] grown = new long[counts.length + grow];
+                System.arraycopy(counts, 0, grown, grow, counts.length);
+                counts = grown;
+                offset -= grow;
+            } else if (index >= offset + counts.length) {
+                int needed = index - offset + 1;
+                counts = Arrays.copyOf(counts, Math.max(needed, counts.length + counts.length / 2));
+            }
+            counts[index - offset] += n;
+        }
+
+        void merge(Buckets other) {
+            for (int i = 0; i < other.counts.length; i++) {
+                if (other.counts[i] > 0) {
+                    add(other.offset + i, other.counts[i]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Equal-width histogram: bin i covers [edges[i], edges[i + 1])
+     */
+    public static class Histogram {
+        private final double[] edges;
+        private final long[] counts;
+
+        Histogram(double[] edges, long[] counts) {
+            this.edges = edges;
+            this.counts = counts;
+        }
+
+        public int getBinCount() {
+            return counts.length;
+        }
+
+        public double getLowerBound(int bin) {
+            return edges[bin];
+        }
+
+        public double getUpperBound(int bin) {
+            return edges[bin + 1];
+        }
+
+        public long getCount(int bin) {
+            return counts[bin];
+        }
+    }
+}
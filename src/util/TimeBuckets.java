@@ -0,0 +1,120 @@
+package util;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.TemporalAdjusters;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Time-series aggregation over the day-number columns ("order_day", "adj_day").
+ *
+ * A whole range is read with one GROUP BY query that returns only the buckets
+ * holding rows; the empty buckets in between are filled with zero in Java, so
+ * charts get one value per day, week or month whatever the range length.
+ */
+public class TimeBuckets {
+
+    /**
+     * Bucket size. Weeks start on Monday, months on the first day of the month.
+     */
+    public enum Granularity {
+        DAY, WEEK, MONTH;
+
+        /**
+         * First day of the bucket holding a date
+         */
+        public LocalDate bucketStart(LocalDate date) {
+            switch (this) {
+                case WEEK:
+                    return date.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+                case MONTH:
+                    return date.withDayOfMonth(1);
+                default:
+                    return date;
+            }
+        }
+
+        /**
+         * First day of the bucket after the one starting on the given date
+         */
+        public LocalDate next(LocalDate bucketStart) {
+            switch (this) {
+                case WEEK:
+                    return bucketStart.plusWeeks(1);
+                case MONTH:
+                    return bucketStart.plusMonths(1);
+                default:
+                    return bucketStart.plusDays(1);
+            }
+        }
+
+        /**
+         * SQL expression giving the day number of the bucket start of a day-number column.
+         * Day 0 (1970-01-01) is a Thursday, hence the +3 to land weeks on Monday.
+         */
+        String sqlExpression(String dayColumn) {
+            switch (this) {
+                case WEEK:
+                    return "(" + dayColumn + " - ((" + dayColumn + " + 3) % 7))";
+                case MONTH:
+                    return DayNumber.sqlExpression("date(" + dayColumn + " * 86400, 'unixepoch', 'start of month')");
+                default:
+                    return dayColumn;
+            }
+        }
+
+        /**
+         * A sensible bucket size for a range of the given number of days
+         */
+        public static Granularity forRange(int days) {
+            if (days > 366) {
+                return MONTH;
+            }
+            return days > 92 ? WEEK : DAY;
+        }
+    }
+
+    /**
+     * Aggregate a value per bucket over a range of days
+     * @param table The table to read, quoted if needed (e.g. "\"Order\"")
+     * @param dayColumn The day-number column of the table
+     * @param aggregate The aggregate to compute per bucket, e.g. "SUM(total_amount)" or "COUNT(*)"
+     * @param granularity The bucket size
+     * @param from First day of the range (inclusive)
+     * @param to Last day of the range (inclusive)
+     * @return Every bucket of the range in order, keyed by its first day; buckets
+     *         without rows hold 0
+     */
+    public static Map<LocalDate, Double> aggregate(String table, String dayColumn, String aggregate,
+                                                   Granularity granularity, LocalDate from, LocalDate to) {
+        Map<LocalDate, Double> buckets = new LinkedHashMap<>();
+        LocalDate end = granularity.bucketStart(to);
+        for (LocalDate start = granularity.bucketStart(from); !start.isAfter(end); start = granularity.next(start)) {
+            buckets.put(start, 0.0);
+        }
+
+        String bucket = granularity.sqlExpression(dayColumn);
+        String sql = "SELECT " + bucket + " AS bucket, " + aggregate + " FROM " + table + " " +
+                     "WHERE " + dayColumn + " >= ? AND " + dayColumn + " < ? " +
+                     "GROUP BY bucket";
+
+        DataUtil.forEach(sql, rs -> {
+            LocalDate start = DayNumber.toLocalDate(rs.getLong(1));
+            if (buckets.containsKey(start)) {
+                buckets.put(start, rs.getDouble(2));
+            }
+        }, DayNumber.of(from), DayNumber.of(to) + 1);
+
+        return buckets;
+    }
+
+    /**
+     * Sum a column per bucket over the last given number of days, ending today
+     */
+    public static Map<LocalDate, Double> sumLastDays(String table, String dayColumn, String valueColumn,
+                                                     Granularity granularity, int days) {
+        LocalDate today = LocalDate.now();
+        return aggregate(table, dayColumn, "TOTAL(" + valueColumn + ")", granularity, today.minusDays(days), today);
+    }
+}
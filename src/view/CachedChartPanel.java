@@ -0,0 +1,79 @@
+package view;
+
+import java.awt.Graphics;
+import java.awt.Insets;
+import java.awt.event.MouseEvent;
+import org.jfree.chart.ChartPanel;
+import org.jfree.chart.JFreeChart;
+import org.jfree.chart.entity.ChartEntity;
+import org.jfree.chart.entity.EntityCollection;
+import util.ChartRenderCache;
+
+/**
+ * Chart panel that paints from {@link ChartRenderCache}, so a chart rebuilt
+ * from unchanged data, or a panel resized back to a size seen before, is copied
+ * instead of drawn again.
+ *
+ * Mouse zooming and the chart properties editor are left out, as they change
+ * the chart without changing its data. When the panel is smaller or larger than
+ * the chart's draw limits the chart is scaled by ChartPanel as usual, uncached.
+ */
+public class CachedChartPanel extends ChartPanel {
+
+    private ChartRenderCache.Render shown;
+    private boolean cachedPaint;
+
+    public CachedChartPanel(JFreeChart chart) {
+        super(chart, false, true, true, false, true);
+    }
+
+    @Override
+    public void paintComponent(Graphics g) {
+        JFreeChart chart = getChart();
+        Insets insets = getInsets();
+        int width = getWidth() - insets.left - insets.right;
+        int height = getHeight() - insets.top - insets.bottom;
+
+        if (chart == null || width < getMinimumDrawWidth() || width > getMaximumDrawWidth()
+                || height < getMinimumDrawHeight() || height > getMaximumDrawHeight()) {
+            cachedPaint = false;
+            shown = null;
+            super.paintComponent(g);
+            return;
+        }
+
+        if (isOpaque()) {
+            g.setColor(getBackground());
+            g.fillRect(0, 0, getWidth(), getHeight());
+        }
+
+        ChartRenderCache.Render render = ChartRenderCache.get(chart, width, height);
+        if (render != shown) {
+            // Tooltips and clicks read the entities of the drawing on screen
+            render.copyInfoTo(getChartRenderingInfo());
+            shown = render;
+        }
+        cachedPaint = true;
+        g.drawImage(render.getImage(), insets.left, insets.top, null);
+    }
+
+    @Override
+    public String getToolTipText(MouseEvent e) {
+        if (!cachedPaint) {
+            return super.getToolTipText(e);
+        }
+        ChartEntity entity = getEntityForPoint(e.getX(), e.getY());
+        return entity != null ? entity.getToolTipText() : null;
+    }
+
+    @Override
+    public ChartEntity getEntityForPoint(int viewX, int viewY) {
+        if (!cachedPaint) {
+            return super.getEntityForPoint(viewX, viewY);
+        }
+        // A cached image is never scaled, unlike ChartPanel's own buffer
+        Insets insets = getInsets();
+        EntityCollection entities = getChartRenderingInfo().getEntityCollection();
+        return entities != null ? entities.getEntity(viewX - insets.left, viewY - insets.top) : null;
+    }
+}
@@ -1,21 +1,53 @@
 package view;
 
 import controller.DashboardController;
+import model.DashboardMetrics;
 import model.Product;
 
 import javax.swing.*;
 import javax.swing.table.DefaultTableModel;
 import java.awt.*;
+import java.awt.event.HierarchyEvent;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.ResourceBundle;
-import org.jfree.chart.ChartPanel;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import org.jfree.chart.ChartMouseEvent;
+import org.jfree.chart.ChartMouseListener;
+import org.jfree.chart.JFreeChart;
+import org.jfree.chart.entity.XYItemEntity;
+import org.jfree.chart.plot.XYPlot;
+import util.AppConfig;
 import util.ArabicFontHelper;
+import util.ChangeTracker;
+import util.DayNumber;
+import util.Downsampler;
 import util.LocaleManager;
+import util.TimeBuckets;
 
+/**
+ * Dashboard with key metrics, charts and the low stock list.
+ *
+ * {@link #refreshData()} loads the metrics, the low stock list and every chart in
+ * parallel on a small worker pool (size "dashboard.renderThreads", default 3, in
+ * line with the read connection pool), building the JFreeChart objects off the
+ * EDT. Each chart slot shows a placeholder until its chart is ready and is then
+ * swapped in on the EDT. Parts whose tables did not change since they were last
+ * loaded are kept as they are. Hiding the dashboard cancels the work still
+ * queued and the next time it is shown it is refreshed again.
+ */
 public class DashboardView extends JPanel {
     
+    private static ExecutorService renderPool;
+    
     private DashboardController controller;
     
     private JPanel metricsPanel;
@@ -34,6 +66,24 @@ public class DashboardView extends JPanel {
     private JTable lowStockTable;
     private DefaultTableModel lowStockTableModel;
     
+    private JPanel productMetricsPanel;
+    private JPanel orderMetricsPanel;
+    
+    // Chart slots: main dashboard, product analysis and order analysis grids
+    private JPanel[] mainChartSlots;
+    private JPanel[] productChartSlots;
+    private JPanel[] orderChartSlots;
+    
+    // Only results of the latest refresh are applied; written on the EDT
+    private volatile long refreshGeneration;
+    private final List<Future<?>> pendingTasks = new ArrayList<>();
+    private int pendingResults;
+    private boolean refreshCancelled;
+    
+    // ChangeTracker version each part was last loaded at, and the day it was loaded on
+    private final Map<Object, Long> loadedVersions = new HashMap<>();
+    private long loadedDay;
+    
     private ResourceBundle messages;
     private boolean isRightToLeft;
     
@@ -47,6 +97,21 @@ public class DashboardView extends JPanel {
         setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
         
         initComponents();
+        
+        // Stop loading when the dashboard is hidden; bring it up to date when it
+        // comes back, which only reloads what changed in between
+        addHierarchyListener(e -> {
+            if ((e.getChangeFlags() & HierarchyEvent.SHOWING_CHANGED) == 0) {
+                return;
+            }
+            if (!isShowing() && pendingResults > 0) {
+                cancelRefresh();
+                refreshCancelled = true;
+            } else if (isShowing() && (refreshCancelled || pendingResults == 0)) {
+                refreshData();
+            }
+        });
+        
         refreshData();
     }
     
@@ -98,6 +163,7 @@ public class DashboardView extends JPanel {
         // Charts panel - changed to 2x2 grid for four charts
         chartsPanel = new JPanel(new GridLayout(2, 2, 10, 10));
         chartsPanel.setBorder(BorderFactory.createTitledBorder(messages.getString("dashboard.analytics")));
+        mainChartSlots = createChartSlots(chartsPanel);
         
         // Low stock panel
         lowStockPanel = new JPanel(new BorderLayout(5, 5));
@@ -170,84 +236,62 @@ public class DashboardView extends JPanel {
             panel.setComponentOrientation(ComponentOrientation.RIGHT_TO_LEFT);
         }
         
-        // Create metrics panel for product statistics
-        JPanel metricsPanel = new JPanel(new GridLayout(2, 4, 10, 10));
-        metricsPanel.setBorder(BorderFactory.createTitledBorder(messages.getString("dashboard.productMetrics")));
+        // Metrics panel for product statistics, filled by updateProductMetrics()
+        productMetricsPanel = new JPanel(new GridLayout(2, 4, 10, 10));
+        productMetricsPanel.setBorder(BorderFactory.createTitledBorder(messages.getString("dashboard.productMetrics")));
+        updateProductMetrics(new DashboardMetrics());
         
-        Map<String, Object> priceStats = controller.getProductPriceStats();
-        Map<String, Object> stockStats = controller.getProductStockStats();
+        // Charts panel for product analysis: price histogram, products by category,
+        // products by supplier and price vs stock
+        JPanel chartsPanel = new JPanel(new GridLayout(2, 2, 10, 10));
+        chartsPanel.setBorder(BorderFactory.createTitledBorder(messages.getString("dashboard.productAnalysis")));
+        productChartSlots = createChartSlots(chartsPanel);
+        
+        // Add to main panel
+        panel.add(productMetricsPanel, BorderLayout.NORTH);
+        panel.add(chartsPanel, BorderLayout.CENTER);
+        
+        return panel;
+    }
+    
+    private void updateProductMetrics(DashboardMetrics metrics) {
+        productMetricsPanel.removeAll();
         
         JLabel minPriceLabel = createMetricLabel(messages.getString("dashboard.minPrice"), 
-            String.format("%.2f", priceStats.get("minPrice") != null ? 
-                ((Number)priceStats.get("minPrice")).doubleValue() : 0.0));
+            String.format("%.2f", metrics.getMinPrice()));
                 
         JLabel maxPriceLabel = createMetricLabel(messages.getString("dashboard.maxPrice"), 
-            String.format("%.2f", priceStats.get("maxPrice") != null ? 
-                ((Number)priceStats.get("maxPrice")).doubleValue() : 0.0));
+            String.format("%.2f", metrics.getMaxPrice()));
                 
         JLabel avgPriceLabel = createMetricLabel(messages.getString("dashboard.avgPrice"), 
-            String.format("%.2f", priceStats.get("avgPrice") != null ? 
-                ((Number)priceStats.get("avgPrice")).doubleValue() : 0.0));
+            String.format("%.2f", metrics.getAvgPrice()));
                 
         JLabel medianPriceLabel = createMetricLabel(messages.getString("dashboard.medianPrice"), 
-            String.format("%.2f", priceStats.get("medianPrice") != null ? 
-                ((Number)priceStats.get("medianPrice")).doubleValue() : 0.0));
+            String.format("%.2f", metrics.getMedianPrice()));
         
         JLabel minStockLabel = createMetricLabel(messages.getString("dashboard.minStock"), 
-            String.valueOf(stockStats.get("minStock") != null ? 
-                ((Number)stockStats.get("minStock")).intValue() : 0));
+            String.valueOf(metrics.getMinStock()));
                 
         JLabel maxStockLabel = createMetricLabel(messages.getString("dashboard.maxStock"), 
-            String.valueOf(stockStats.get("maxStock") != null ? 
-                ((Number)stockStats.get("maxStock")).intValue() : 0));
+            String.valueOf(metrics.getMaxStock()));
                 
         JLabel avgStockLabel = createMetricLabel(messages.getString("dashboard.avgStock"), 
-            String.format("%.1f", stockStats.get("avgStock") != null ? 
-                ((Number)stockStats.get("avgStock")).doubleValue() : 0.0));
+            String.format("%.1f", metrics.getAvgStock()));
                 
         JLabel zeroStockLabel = createMetricLabel(messages.getString("dashboard.outOfStock"), 
-            String.valueOf(stockStats.get("zeroStock") != null ? 
-                ((Number)stockStats.get("zeroStock")).intValue() : 0) + " " + messages.getString("dashboard.products"));
-        
-        metricsPanel.add(minPriceLabel);
-        metricsPanel.add(maxPriceLabel);
-        metricsPanel.add(avgPriceLabel);
-        metricsPanel.add(medianPriceLabel);
-        metricsPanel.add(minStockLabel);
-        metricsPanel.add(maxStockLabel);
-        metricsPanel.add(avgStockLabel);
-        metricsPanel.add(zeroStockLabel);
-        
-        // Create charts panel for product analysis
-        JPanel chartsPanel = new JPanel(new GridLayout(2, 2, 10, 10));
-        chartsPanel.setBorder(BorderFactory.createTitledBorder(messages.getString("dashboard.productAnalysis")));
-        
-        // Create and add price histogram chart
-        ChartPanel priceHistogramPanel = new ChartPanel(controller.createProductPriceHistogram());
-        priceHistogramPanel.setPreferredSize(new Dimension(350, 250));
-        
-        // Create and add products by category chart
-        ChartPanel categoryChartPanel = new ChartPanel(controller.createProductsByCategory());
-        categoryChartPanel.setPreferredSize(new Dimension(350, 250));
-        
-        // Create and add products by supplier chart
-        ChartPanel supplierChartPanel = new ChartPanel(controller.createProductsBySupplier());
-        supplierChartPanel.setPreferredSize(new Dimension(350, 250));
-        
-        // Create and add price vs stock chart
-        ChartPanel priceVsStockPanel = new ChartPanel(controller.createPriceVsStockChart());
-        priceVsStockPanel.setPreferredSize(new Dimension(350, 250));
-        
-        chartsPanel.add(priceHistogramPanel);
-        chartsPanel.add(categoryChartPanel);
-        chartsPanel.add(supplierChartPanel);
-        chartsPanel.add(priceVsStockPanel);
-        
-        // Add to main panel
-        panel.add(metricsPanel, BorderLayout.NORTH);
-        panel.add(chartsPanel, BorderLayout.CENTER);
-        
-        return panel;
+            metrics.getZeroStockCount() + " " + messages.getString("dashboard.products"));
+        
+        productMetricsPanel.add(minPriceLabel);
+        productMetricsPanel.add(maxPriceLabel);
+        productMetricsPanel.add(avgPriceLabel);
+        productMetricsPanel.add(medianPriceLabel);
+        productMetricsPanel.add(minStockLabel);
+        productMetricsPanel.add(maxStockLabel);
+        productMetricsPanel.add(avgStockLabel);
+        productMetricsPanel.add(zeroStockLabel);
+        
+        productMetricsPanel.revalidate();
+        productMetricsPanel.repaint();
     }
     
     private JPanel createOrderAnalysisPanel() {
@@ -259,137 +303,213 @@ public class DashboardView extends JPanel {
             panel.setComponentOrientation(ComponentOrientation.RIGHT_TO_LEFT);
         }
         
-        // Create metrics panel for order statistics
-        JPanel metricsPanel = new JPanel(new GridLayout(2, 4, 10, 10));
-        metricsPanel.setBorder(BorderFactory.createTitledBorder(messages.getString("dashboard.orderMetrics")));
+        // Metrics panel for order statistics, filled by updateOrderMetrics()
+        orderMetricsPanel = new JPanel(new GridLayout(2, 4, 10, 10));
+        orderMetricsPanel.setBorder(BorderFactory.createTitledBorder(messages.getString("dashboard.orderMetrics")));
+        updateOrderMetrics(new DashboardMetrics());
+        
+        // Charts panel for order analysis: orders by status, orders by customer,
+        // order value distribution and status trend
+        JPanel chartsPanel = new JPanel(new GridLayout(2, 2, 10, 10));
+        chartsPanel.setBorder(BorderFactory.createTitledBorder(messages.getString("dashboard.orderAnalysis")));
+        orderChartSlots = createChartSlots(chartsPanel);
         
-        Map<String, Object> orderStats = controller.getOrderStats();
-        Map<String, Object> dateRangeStats = controller.getOrdersByDateRange();
+        // Add to main panel
+        panel.add(orderMetricsPanel, BorderLayout.NORTH);
+        panel.add(chartsPanel, BorderLayout.CENTER);
+        
+        return panel;
+    }
+    
+    private void updateOrderMetrics(DashboardMetrics metrics) {
+        orderMetricsPanel.removeAll();
         
         JLabel totalOrdersLabel = createMetricLabel(messages.getString("dashboard.totalOrders"), 
-            String.valueOf(orderStats.get("totalOrders") != null ? 
-                ((Number)orderStats.get("totalOrders")).intValue() : 0));
+            String.valueOf(metrics.getTotalOrders()));
                 
         JLabel avgOrderValueLabel = createMetricLabel(messages.getString("dashboard.avgOrderValue"), 
-            String.format("DZD %.2f", orderStats.get("avgOrderValue") != null ? 
-                ((Number)orderStats.get("avgOrderValue")).doubleValue() : 0.0));
+            String.format("DZD %.2f", metrics.getAvgOrderValue()));
                 
         JLabel maxOrderValueLabel = createMetricLabel(messages.getString("dashboard.maxOrderValue"), 
-            String.format("DZD %.2f", orderStats.get("maxOrderValue") != null ? 
-                ((Number)orderStats.get("maxOrderValue")).doubleValue() : 0.0));
+            String.format("DZD %.2f", metrics.getMaxOrderValue()));
                 
         JLabel totalRevenueLabel = createMetricLabel(messages.getString("dashboard.totalRevenue"), 
-            String.format("DZD %.2f", orderStats.get("totalRevenue") != null ? 
-                ((Number)orderStats.get("totalRevenue")).doubleValue() : 0.0));
+            String.format("DZD %.2f", metrics.getTotalRevenue()));
         
         JLabel todayOrdersLabel = createMetricLabel(messages.getString("dashboard.todayOrders"), 
-            String.valueOf(dateRangeStats.get("todayCount") != null ? 
-                ((Number)dateRangeStats.get("todayCount")).intValue() : 0) + 
-            " (DZD" + String.format("%.2f", dateRangeStats.get("todayTotal") != null ? 
-                ((Number)dateRangeStats.get("todayTotal")).doubleValue() : 0.0) + ")");
+            metrics.getTodayOrders() + " (DZD" + String.format("%.2f", metrics.getTodaySales()) + ")");
                 
         JLabel weekOrdersLabel = createMetricLabel(messages.getString("dashboard.weekOrders"), 
-            String.valueOf(dateRangeStats.get("weekCount") != null ? 
-                ((Number)dateRangeStats.get("weekCount")).intValue() : 0) + 
-            " (DZD" + String.format("%.2f", dateRangeStats.get("weekTotal") != null ? 
-                ((Number)dateRangeStats.get("weekTotal")).doubleValue() : 0.0) + ")");
+            metrics.getWeekOrders() + " (DZD" + String.format("%.2f", metrics.getWeekSales()) + ")");
                 
         JLabel monthOrdersLabel = createMetricLabel(messages.getString("dashboard.monthOrders"), 
-            String.valueOf(dateRangeStats.get("monthCount") != null ? 
-                ((Number)dateRangeStats.get("monthCount")).intValue() : 0) + 
-            " (DZD" + String.format("%.2f", dateRangeStats.get("monthTotal") != null ? 
-                ((Number)dateRangeStats.get("monthTotal")).doubleValue() : 0.0) + ")");
+            metrics.getMonthOrders() + " (DZD" + String.format("%.2f", metrics.getMonthSales()) + ")");
                 
         JLabel avgItemsLabel = createMetricLabel(messages.getString("dashboard.avgItemsPerOrder"), 
-            String.format("%.1f", orderStats.get("avgItemsPerOrder") != null ? 
-                ((Number)orderStats.get("avgItemsPerOrder")).doubleValue() : 0.0));
-        
-        metricsPanel.add(totalOrdersLabel);
-        metricsPanel.add(avgOrderValueLabel);
-        metricsPanel.add(maxOrderValueLabel);
-        metricsPanel.add(totalRevenueLabel);
-        metricsPanel.add(todayOrdersLabel);
-        metricsPanel.add(weekOrdersLabel);
-        metricsPanel.add(monthOrdersLabel);
-        metricsPanel.add(avgItemsLabel);
-        
-        // Create charts panel for order analysis
-        JPanel chartsPanel = new JPanel(new GridLayout(2, 2, 10, 10));
-        chartsPanel.setBorder(BorderFactory.createTitledBorder(messages.getString("dashboard.orderAnalysis")));
-        
-        // Create and add order status chart
-        ChartPanel orderStatusPanel = new ChartPanel(controller.createOrdersByStatusChart());
-        orderStatusPanel.setPreferredSize(new Dimension(350, 250));
-        
-        // Create and add orders by customer chart
-        ChartPanel customerChartPanel = new ChartPanel(controller.createOrdersByCustomer());
-        customerChartPanel.setPreferredSize(new Dimension(350, 250));
-        
-        // Create and add order value distribution chart
-        ChartPanel orderValuePanel = new ChartPanel(controller.createOrderValueDistribution());
-        orderValuePanel.setPreferredSize(new Dimension(350, 250));
-        
-        // Create and add order status trend chart
-        ChartPanel orderTrendPanel = new ChartPanel(controller.createOrderStatusTrend());
-        orderTrendPanel.setPreferredSize(new Dimension(350, 250));
-        
-        chartsPanel.add(orderStatusPanel);
-        chartsPanel.add(customerChartPanel);
-        chartsPanel.add(orderValuePanel);
-        chartsPanel.add(orderTrendPanel);
-        
-        // Add to main panel
-        panel.add(metricsPanel, BorderLayout.NORTH);
-        panel.add(chartsPanel, BorderLayout.CENTER);
-        
-        return panel;
-    }    
-
+            String.format("%.1f", metrics.getAvgItemsPerOrder()));
+        
+        orderMetricsPanel.add(totalOrdersLabel);
+        orderMetricsPanel.add(avgOrderValueLabel);
+        orderMetricsPanel.add(maxOrderValueLabel);
+        orderMetricsPanel.add(totalRevenueLabel);
+        orderMetricsPanel.add(todayOrdersLabel);
+        orderMetricsPanel.add(weekOrdersLabel);
+        orderMetricsPanel.add(monthOrdersLabel);
+        orderMetricsPanel.add(avgItemsLabel);
+        
+        orderMetricsPanel.revalidate();
+        orderMetricsPanel.repaint();
+    }
+    
+    /**
+     * Reload in the background whatever changed since it was last loaded: each
+     * part declares the tables it reads and is skipped while their
+     * {@link ChangeTracker} version is unchanged, so switching back to the
+     * dashboard costs next to nothing. Everything is reloaded when the day
+     * changes, as several parts are relative to today. Callable any time on the
+     * EDT; a refresh still running is cancelled and its results are dropped.
+     */
     public void refreshData() {
-        // Update metrics
-        Map<String, Object> metrics = controller.getStockMetrics();
-        
-        totalProductsLabel.setText(formatMetric(messages.getString("dashboard.totalProducts"), metrics.get("totalProducts")));
-        lowStockCountLabel.setText(formatMetric(messages.getString("dashboard.lowStockItems"), metrics.get("lowStockCount")));
-        
-        Double invValue = metrics.get("inventoryValue") != null ? 
-                         ((Number)metrics.get("inventoryValue")).doubleValue() : 0.0;
-        inventoryValueLabel.setText(formatMetric(messages.getString("dashboard.inventoryValue"), String.format("DZD %.2f", invValue)));
-        
-        totalOrdersLabel.setText(formatMetric(messages.getString("dashboard.totalOrders"), metrics.get("totalOrders")));
-        pendingOrdersLabel.setText(formatMetric(messages.getString("dashboard.pendingOrders"), metrics.get("pendingOrders")));
-        todayOrdersLabel.setText(formatMetric(messages.getString("dashboard.todayOrders"), metrics.get("todayOrders")));
-        
-        Double todaySales = metrics.get("todaySales") != null ? 
-                           ((Number)metrics.get("todaySales")).doubleValue() : 0.0;
-        todaySalesLabel.setText(formatMetric(messages.getString("dashboard.todaySales"), String.format("DZD %.2f", todaySales)));
-        
-        Double recentSales = metrics.get("recentSales") != null ? 
-                            ((Number)metrics.get("recentSales")).doubleValue() : 0.0;
-        recentSalesLabel.setText(formatMetric(messages.getString("dashboard.recentSales"), String.format("DZD %.2f", recentSales)));
-        
-        // Update low stock table
-        refreshLowStockTable();
+        cancelRefresh();
+        refreshCancelled = false;
+        long generation = ++refreshGeneration;
+        
+        long today = DayNumber.today();
+        if (today != loadedDay) {
+            loadedVersions.clear();
+            loadedDay = today;
+        }
         
-        // Update charts
-        refreshCharts();
-
-        // Remove and re-create the analysis tabs to refresh them
-        JTabbedPane tabbedAnalytics = (JTabbedPane) getComponent(0);
-        tabbedAnalytics.removeTabAt(2); // Order Analysis tab
-        tabbedAnalytics.removeTabAt(1); // Product Analysis tab
+        // Metrics, all computed in one snapshot, and the low stock table
+        submit(generation, "metrics", controller::getDashboardMetrics, this::updateMetrics, null,
+                "Product", "Order", "OrderItem");
+        submit(generation, "lowStock", controller::getLowStockProducts, this::updateLowStockTable, null,
+                "Product", "Category", "Supplier");
+        
+        // Main dashboard charts
+        int maxPoints = Downsampler.maxPointsForWidth(mainChartSlots[0].getWidth());
+        submitChart(generation, mainChartSlots[0],
+                () -> controller.createSalesChart(30, TimeBuckets.Granularity.DAY, maxPoints), "SalesDaily");
+        submitChart(generation, mainChartSlots[1], controller::createStockByCategory, "Product", "Category");
+        submitChart(generation, mainChartSlots[2], controller::createTopProductsChart, "ProductSales", "Product");
+        submitChart(generation, mainChartSlots[3], () -> controller.createInventoryTrendChart(30, maxPoints),
+                "Product", "StockMovement", "StockCheckpoint");
+        
+        // Product analysis charts
+        submitChart(generation, productChartSlots[0], controller::createProductPriceHistogram, "Product");
+        submitChart(generation, productChartSlots[1], controller::createProductsByCategory, "Product", "Category");
+        submitChart(generation, productChartSlots[2], controller::createProductsBySupplier, "Product", "Supplier");
+        submitChart(generation, productChartSlots[3], controller::createPriceVsStockChart, "Product");
+        
+        // Order analysis charts
+        submitChart(generation, orderChartSlots[0], controller::createOrdersByStatusChart, "Order");
+        submitChart(generation, orderChartSlots[1], controller::createOrdersByCustomer, "CustomerOrders", "Customer");
+        submitChart(generation, orderChartSlots[2], controller::createOrderValueDistribution, "Order");
+        submitChart(generation, orderChartSlots[3], controller::createOrderStatusTrend, "StatusMonthly");
+    }
+    
+    /**
+     * Drop the current refresh: queued tasks never start and results of running
+     * ones are ignored. Running queries are not interrupted, as that would hand
+     * them the writer connection instead of a pooled reader.
+     */
+    private void cancelRefresh() {
+        refreshGeneration++;
+        for (Future<?> task : pendingTasks) {
+            task.cancel(false);
+        }
+        pendingTasks.clear();
+        pendingResults = 0;
+    }
+    
+    /**
+     * Run a loader on the render pool and hand its result to the EDT, unless a
+     * newer refresh has started by then. Nothing is run when the tables it reads
+     * have not changed since its last result was applied.
+     * @param key Identifies the part of the dashboard being loaded
+     * @param failed Run on the EDT when the loader fails, or null
+     * @param tables The tables the loader reads
+     * @return true if the loader was submitted
+     */
+    private <T> boolean submit(long generation, Object key, Supplier<T> loader, Consumer<T> apply,
+                               Runnable failed, String... tables) {
+        // Taken before loading, so the data read is at least this new
+        long version = ChangeTracker.version(tables);
+        Long loaded = loadedVersions.get(key);
+        if (loaded != null && loaded == version) {
+            return false;
+        }
         
-        tabbedAnalytics.addTab(messages.getString("dashboard.productAnalysis"), createProductAnalysisPanel());
-        tabbedAnalytics.addTab(messages.getString("dashboard.orderAnalysis"), createOrderAnalysisPanel());        
+        pendingResults++;
+        pendingTasks.add(getRenderPool().submit(() -> {
+            if (generation != refreshGeneration) {
+                return;
+            }
+            
+            T result = null;
+            try {
+                result = loader.get();
+            } catch (RuntimeException e) {
+                System.err.println("Error loading dashboard data: " + e.getMessage());
+                e.printStackTrace();
+            }
+            
+            T value = result;
+            SwingUtilities.invokeLater(() -> {
+                if (generation != refreshGeneration) {
+                    return;
+                }
+                pendingResults--;
+                if (value != null) {
+                    apply.accept(value);
+                    loadedVersions.put(key, version);
+                } else if (failed != null) {
+                    failed.run();
+                }
+            });
+        }));
+        return true;
+    }
+    
+    private void submitChart(long generation, JPanel slot, Supplier<JFreeChart> chart, String... tables) {
+        if (submit(generation, slot, chart, result -> showChart(slot, result), () -> showLoadError(slot),
+                tables)) {
+            showPlaceholder(slot);
+        }
+    }
+    
+    private static synchronized ExecutorService getRenderPool() {
+        if (renderPool == null) {
+            AtomicInteger count = new AtomicInteger();
+            int threads = Math.max(1, AppConfig.getInt("dashboard.renderThreads", 3));
+            renderPool = Executors.newFixedThreadPool(threads, runnable -> {
+                Thread thread = new Thread(runnable, "dashboard-render-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return renderPool;
+    }
+    
+    private void updateMetrics(DashboardMetrics metrics) {
+        totalProductsLabel.setText(formatMetric(messages.getString("dashboard.totalProducts"), metrics.getTotalProducts()));
+        lowStockCountLabel.setText(formatMetric(messages.getString("dashboard.lowStockItems"), metrics.getLowStockCount()));
+        inventoryValueLabel.setText(formatMetric(messages.getString("dashboard.inventoryValue"), String.format("DZD %.2f", metrics.getInventoryValue())));
+        
+        totalOrdersLabel.setText(formatMetric(messages.getString("dashboard.totalOrders"), metrics.getTotalOrders()));
+        pendingOrdersLabel.setText(formatMetric(messages.getString("dashboard.pendingOrders"), metrics.getPendingOrders()));
+        todayOrdersLabel.setText(formatMetric(messages.getString("dashboard.todayOrders"), metrics.getTodayOrders()));
+        todaySalesLabel.setText(formatMetric(messages.getString("dashboard.todaySales"), String.format("DZD %.2f", metrics.getTodaySales())));
+        recentSalesLabel.setText(formatMetric(messages.getString("dashboard.recentSales"), String.format("DZD %.2f", metrics.getMonthSales())));
+        
+        updateProductMetrics(metrics);
+        updateOrderMetrics(metrics);
     }
     
-    private void refreshLowStockTable() {
+    private void updateLowStockTable(List<Product> lowStockProducts) {
         // Clear existing data
         lowStockTableModel.setRowCount(0);
         
-        // Get low stock products
-        List<Product> lowStockProducts = controller.getLowStockProducts();
-        
         // Populate table
         for (Product product : lowStockProducts) {
             Object[] rowData = {
@@ -405,38 +525,105 @@ public class DashboardView extends JPanel {
         }
     }
     
-    private void refreshCharts() {
-        // Remove existing charts
-        chartsPanel.removeAll();
-        
-        // Create and add sales chart with proper sizing
-        ChartPanel salesChartPanel = new ChartPanel(controller.createSalesChart(30));
-        salesChartPanel.setPreferredSize(new Dimension(350, 250));
-        salesChartPanel.setMinimumSize(new Dimension(300, 200));
-        
-        // Create and add category chart with proper sizing
-        ChartPanel categoryChartPanel = new ChartPanel(controller.createStockByCategory());
-        categoryChartPanel.setPreferredSize(new Dimension(350, 250));
-        categoryChartPanel.setMinimumSize(new Dimension(300, 200));
-        
-        // Create and add top products pie chart with proper sizing
-        ChartPanel topProductsChartPanel = new ChartPanel(controller.createTopProductsChart());
-        topProductsChartPanel.setPreferredSize(new Dimension(350, 250));
-        topProductsChartPanel.setMinimumSize(new Dimension(300, 200));
-        
-        // Create and add inventory trend chart with proper sizing
-        ChartPanel inventoryTrendChartPanel = new ChartPanel(controller.createInventoryTrendChart(30));
-        inventoryTrendChartPanel.setPreferredSize(new Dimension(350, 250));
-        inventoryTrendChartPanel.setMinimumSize(new Dimension(300, 200));
-        
-        // Add all charts to panel
-        chartsPanel.add(salesChartPanel);
-        chartsPanel.add(categoryChartPanel);
-        chartsPanel.add(topProductsChartPanel);
-        chartsPanel.add(inventoryTrendChartPanel);
-        
-        chartsPanel.revalidate();
-        chartsPanel.repaint();
+    /**
+     * Fill a 2x2 charts panel with four empty slots
+     */
+    private JPanel[] createChartSlots(JPanel chartsPanel) {
+        JPanel[] slots = new JPanel[4];
+        for (int i = 0; i < slots.length; i++) {
+            slots[i] = new JPanel(new BorderLayout());
+            slots[i].setPreferredSize(new Dimension(350, 250));
+            slots[i].setMinimumSize(new Dimension(300, 200));
+            chartsPanel.add(slots[i]);
+        }
+        return slots;
+    }
+    
+    private void showPlaceholder(JPanel slot) {
+        setSlotContent(slot, new JLabel(messages.getString("common.loading") + "...", JLabel.CENTER));
+    }
+    
+    private void showLoadError(JPanel slot) {
+        setSlotContent(slot, new JLabel(messages.getString("dashboard.loadError"), JLabel.CENTER));
+    }
+    
+    private void showChart(JPanel slot, JFreeChart chart) {
+        CachedChartPanel chartPanel = new CachedChartPanel(chart);
+        
+        // Density charts list the products of a cell when it is clicked
+        if (chart.getPlot() instanceof XYPlot
+                && ((XYPlot) chart.getPlot()).getDataset() instanceof DashboardController.PriceStockBins) {
+            DashboardController.PriceStockBins bins =
+                    (DashboardController.PriceStockBins) ((XYPlot) chart.getPlot()).getDataset();
+            chartPanel.addChartMouseListener(new ChartMouseListener() {
+                @Override
+                public void chartMouseClicked(ChartMouseEvent event) {
+                    if (event.getEntity() instanceof XYItemEntity) {
+                        showBinProducts(bins, ((XYItemEntity) event.getEntity()).getItem());
+                    }
+                }
+                
+                @Override
+                public void chartMouseMoved(ChartMouseEvent event) {
+                }
+            });
+        }
+        
+        setSlotContent(slot, chartPanel);
+    }
+    
+    private void showBinProducts(DashboardController.PriceStockBins bins, int item) {
+        int limit = 500;
+        List<Product> products = controller.getProductsInBin(bins, item, limit);
+        
+        String[] columnNames = {
+            messages.getString("products.column.sku"),
+            messages.getString("products.column.name"),
+            messages.getString("products.column.price"),
+            messages.getString("products.column.stock")
+        };
+        DefaultTableModel model = new DefaultTableModel(columnNames, 0) {
+            @Override
+            public boolean isCellEditable(int row, int column) {
+                return false;
+            }
+        };
+        for (Product product : products) {
+            model.addRow(new Object[] {
+                product.getSku(),
+                product.getName(),
+                String.format("%.2f", product.getUnitPrice()),
+                product.getStockQty()
+            });
+        }
+        
+        JTable table = new JTable(model);
+        if (isRightToLeft) {
+            table.setComponentOrientation(ComponentOrientation.RIGHT_TO_LEFT);
+            table.getTableHeader().setComponentOrientation(ComponentOrientation.RIGHT_TO_LEFT);
+        }
+        
+        JPanel panel = new JPanel(new BorderLayout(5, 5));
+        JScrollPane scrollPane = new JScrollPane(table);
+        scrollPane.setPreferredSize(new Dimension(500, 300));
+        panel.add(scrollPane, BorderLayout.CENTER);
+        
+        int total = bins.getCount(item);
+        if (total > products.size()) {
+            panel.add(new JLabel(messages.getString("dashboard.binProductsLimited")
+                    .replace("{0}", String.valueOf(products.size()))
+                    .replace("{1}", String.valueOf(total))), BorderLayout.SOUTH);
+        }
+        
+        JOptionPane.showMessageDialog(this, panel, messages.getString("dashboard.binProducts"),
+                JOptionPane.PLAIN_MESSAGE);
+    }
+    
+    private void setSlotContent(JPanel slot, Component content) {
+        slot.removeAll();
+        slot.add(content, BorderLayout.CENTER);
+        slot.revalidate();
+        slot.repaint();
     }
     
     private JLabel createMetricLabel(String title, String value) {
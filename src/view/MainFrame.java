@@ -15,15 +15,17 @@ import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
-import java.sql.Connection;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.Locale;
 import java.util.ResourceBundle;
 import javax.swing.border.EmptyBorder;
 
+import util.ChangeTracker;
 import util.DBConnection;
+import util.DataUtil;
 import util.LocaleManager;
+import util.SalesRollup;
 
 public class MainFrame extends JFrame {
     
@@ -275,6 +277,10 @@ public class MainFrame extends JFrame {
                 // Delete the database file
                 File dbFile = new File("stock-manager.db");
                 if (dbFile.exists()) {
+                    // Drop any leftover WAL files so they are not replayed into the new database
+                    new File("stock-manager.db-wal").delete();
+                    new File("stock-manager.db-shm").delete();
+                    
                     if (dbFile.delete()) {
                         // Get a new connection to regenerate the database
                         DBConnection.getConnection();
@@ -352,63 +358,69 @@ public class MainFrame extends JFrame {
             
             // Run the SQL execution in a background thread
             new Thread(() -> {
-                Connection conn = null;
                 try {
-                    conn = DBConnection.getConnection();
-                    conn.setAutoCommit(false);
-                    
-                    try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
-                        StringBuilder currentStatement = new StringBuilder();
-                        String line;
-                        int statementCount = 0;
-                        
-                        SwingUtilities.invokeLater(() -> 
-                            statusLabel.setText(messages.getString("status.executingSql")));
-                        
-                        while ((line = reader.readLine()) != null) {
-                            // Skip comments
-                            if (line.trim().startsWith("--")) {
-                                continue;
-                            }
+                    // Run the whole import in one transaction owned by this thread;
+                    // other threads' writes wait and their reads keep working
+                    int totalCount = DataUtil.inTransaction(conn -> {
+                        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+                            StringBuilder currentStatement = new StringBuilder();
+                            String line;
+                            int statementCount = 0;
                             
-                            // Add the line to the current statement
-                            currentStatement.append(line).append(" ");
+                            SwingUtilities.invokeLater(() -> 
+                                statusLabel.setText(messages.getString("status.executingSql")));
                             
-                            // If the line has a semicolon, execute the statement
-                            if (line.trim().endsWith(";")) {
-                                String sql = currentStatement.toString().trim();
-                                if (!sql.isEmpty()) {
-                                    try (Statement stmt = conn.createStatement()) {
-                                        stmt.execute(sql);
-                                        statementCount++;
-                                        final int count = statementCount;
-                                        SwingUtilities.invokeLater(() -> 
-                                            statusLabel.setText(messages.getString("status.executed")
-                                                .replace("{0}", String.valueOf(count))));
-                                    } catch (SQLException ex) {
-                                        System.err.println("Error executing: " + sql);
-                                        System.err.println("Error message: " + ex.getMessage());
+                            while ((line = reader.readLine()) != null) {
+                                // Skip comments
+                                if (line.trim().startsWith("--")) {
+                                    continue;
+                                }
+                                
+                                // Add the line to the current statement
+                                currentStatement.append(line).append(" ");
+                                
+                                // If the line has a semicolon, execute the statement
+                                if (line.trim().endsWith(";")) {
+                                    String sql = currentStatement.toString().trim();
+                                    if (!sql.isEmpty()) {
+                                        try (Statement stmt = conn.createStatement()) {
+                                            stmt.execute(sql);
+                                            statementCount++;
+                                            final int count = statementCount;
+                                            SwingUtilities.invokeLater(() -> 
+                                                statusLabel.setText(messages.getString("status.executed")
+                                                    .replace("{0}", String.valueOf(count))));
+                                        } catch (SQLException ex) {
+                                            System.err.println("Error executing: " + sql);
+                                            System.err.println("Error message: " + ex.getMessage());
+                                        }
                                     }
+                                    currentStatement = new StringBuilder();
                                 }
-                                currentStatement = new StringBuilder();
                             }
+                            
+                            // Imported orders bypass the controllers, so recompute the rollups
+                            SalesRollup.rebuildInTransaction();
+                            
+                            // The script may have written to any table
+                            ChangeTracker.changedAll();
+                            return statementCount;
+                        } catch (IOException ex) {
+                            throw new SQLException("Error reading " + file + ": " + ex.getMessage(), ex);
                         }
+                    });
+                    
+                    SwingUtilities.invokeLater(() -> {
+                        progressDialog.dispose();
+                        JOptionPane.showMessageDialog(MainFrame.this, 
+                            messages.getString("success.importedSql")
+                                .replace("{0}", String.valueOf(totalCount)),
+                            messages.getString("title.importComplete"), 
+                            JOptionPane.INFORMATION_MESSAGE);
                         
-                        conn.commit();
-                        
-                        final int totalCount = statementCount;
-                        SwingUtilities.invokeLater(() -> {
-                            progressDialog.dispose();
-                            JOptionPane.showMessageDialog(MainFrame.this, 
-                                messages.getString("success.importedSql")
-                                    .replace("{0}", String.valueOf(totalCount)),
-                                messages.getString("title.importComplete"), 
-                                JOptionPane.INFORMATION_MESSAGE);
-                            
-                            // Refresh the currently active view
-                            refreshCurrentTab();
-                        });
-                    }
+                        // Refresh the currently active view
+                        refreshCurrentTab();
+                    });
                 } catch (Exception ex) {
                     ex.printStackTrace();
                     SwingUtilities.invokeLater(() -> {
@@ -418,22 +430,6 @@ public class MainFrame extends JFrame {
                             messages.getString("title.importFailed"), 
                             JOptionPane.ERROR_MESSAGE);
                     });
-                    
-                    if (conn != null) {
-                        try {
-                            conn.rollback();
-                        } catch (SQLException rollbackEx) {
-                            rollbackEx.printStackTrace();
-                        }
-                    }
-                } finally {
-                    if (conn != null) {
-                        try {
-                            conn.setAutoCommit(true);
-                        } catch (SQLException autoCommitEx) {
-                            autoCommitEx.printStackTrace();
-                        }
-                    }
                 }
             }).start();
             
@@ -449,6 +445,21 @@ public class MainFrame extends JFrame {
         }
     }
     
+    private void rebuildStatistics() {
+        if (SalesRollup.rebuild()) {
+            JOptionPane.showMessageDialog(this,
+                messages.getString("success.statisticsRebuilt"),
+                messages.getString("menu.rebuildStatistics"),
+                JOptionPane.INFORMATION_MESSAGE);
+            refreshCurrentTab();
+        } else {
+            JOptionPane.showMessageDialog(this,
+                messages.getString("error.rebuildingStatistics"),
+                messages.getString("menu.rebuildStatistics"),
+                JOptionPane.ERROR_MESSAGE);
+        }
+    }
+    
     private void createMenuBar() {
         menuBar = new JMenuBar();
         
@@ -456,12 +467,14 @@ public class MainFrame extends JFrame {
         JMenu fileMenu = new JMenu(messages.getString("menu.file"));
         JMenuItem importSamplesMenuItem = new JMenuItem(messages.getString("menu.importSamples"));
         JMenuItem clearDatabaseMenuItem = new JMenuItem(messages.getString("menu.clearDatabase"));
+        JMenuItem rebuildStatisticsMenuItem = new JMenuItem(messages.getString("menu.rebuildStatistics"));
         JMenuItem languageMenuItem = new JMenuItem(messages.getString("menu.language"));
         JMenuItem themeMenuItem = new JMenuItem(messages.getString("menu.theme"));
         JMenuItem exitMenuItem = new JMenuItem(messages.getString("menu.exit"));
         
         importSamplesMenuItem.addActionListener(e -> importSampleData());
         clearDatabaseMenuItem.addActionListener(e -> clearDatabase());
+        rebuildStatisticsMenuItem.addActionListener(e -> rebuildStatistics());
         languageMenuItem.addActionListener(e -> showLanguageDialog());
         themeMenuItem.addActionListener(e -> showThemeDialog());
         exitMenuItem.addActionListener(e -> {
@@ -471,6 +484,7 @@ public class MainFrame extends JFrame {
         
         fileMenu.add(importSamplesMenuItem);
         fileMenu.add(clearDatabaseMenuItem);
+        fileMenu.add(rebuildStatisticsMenuItem);
         fileMenu.add(languageMenuItem);
         fileMenu.add(themeMenuItem);
         fileMenu.addSeparator();
@@ -1,7 +1,16 @@
 package view;
 
+import com.toedter.calendar.JDateChooser;
+import controller.CategoryController;
+import controller.CustomerController;
 import controller.ReportController;
+import controller.SupplierController;
+import model.Category;
+import model.Customer;
 import model.Report;
+import model.ReportJob;
+import model.ReportParameters;
+import model.Supplier;
 
 import javax.swing.*;
 import javax.swing.table.DefaultTableModel;
@@ -9,10 +18,15 @@ import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.io.File;
 import java.text.SimpleDateFormat;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Date;
 import java.util.List;
 import java.util.Locale;
 import java.util.ResourceBundle;
+import java.util.function.Consumer;
 import util.ArabicFontHelper;
+import util.JobControl;
 
 public class ReportView extends JPanel {
     
@@ -24,6 +38,31 @@ public class ReportView extends JPanel {
     private JButton generateButton;
     private JButton viewButton;
     
+    // Report filters
+    private JDateChooser fromDateChooser;
+    private JDateChooser toDateChooser;
+    private JComboBox<Category> categoryFilter;
+    private JComboBox<Supplier> supplierFilter;
+    private JComboBox<Customer> customerFilter;
+    private JComboBox<String> statusFilter;
+    private JSpinner topNSpinner;
+    
+    // Stored order statuses, in the order of the status filter; null for all
+    private static final String[] ORDER_STATUSES = {null, "New", "Processing", "Shipped", "Delivered", "Cancelled"};
+    
+    private JTable jobsTable;
+    private DefaultTableModel jobsModel;
+    private JButton cancelJobButton;
+    
+    // Refreshes the progress of active jobs while there are any
+    private Timer progressTimer;
+    private Consumer<ReportJob> jobListener;
+    private boolean detached;
+    
+    private static final int RECENT_JOBS = 20;
+    private static final int JOB_STATUS_COLUMN = 3;
+    private static final int JOB_PROGRESS_COLUMN = 4;
+    
     private ReportController reportController;
     private SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
     
@@ -41,6 +80,32 @@ public class ReportView extends JPanel {
         
         // Load initial data
         loadReports();
+        loadJobs();
+        
+        // Jobs report from their worker threads while the view is on screen
+        jobListener = job -> SwingUtilities.invokeLater(() -> jobChanged(job));
+    }
+    
+    @Override
+    public void addNotify() {
+        super.addNotify();
+        reportController.addJobListener(jobListener);
+        if (detached) {
+            // Catch up on jobs that changed while the view was not listening
+            detached = false;
+            loadReports();
+            loadJobs();
+        }
+    }
+    
+    @Override
+    public void removeNotify() {
+        // Stop listening when the frame is disposed, e.g. on logout, so a closed
+        // view neither stays reachable nor shows dialogs of its own
+        reportController.removeJobListener(jobListener);
+        progressTimer.stop();
+        detached = true;
+        super.removeNotify();
     }
     
     private void loadLocalization() {
@@ -83,7 +148,7 @@ public class ReportView extends JPanel {
         topPanel.add(reportTypeCombo);
         
         topPanel.add(new JLabel(messages.getString("reports.format") + ":"));
-        formatCombo = new JComboBox<>(new String[] {"CSV", "PDF"});
+        formatCombo = new JComboBox<>(new String[] {"CSV", "CSV.GZ", "PDF"});
         if (isRightToLeft) {
             formatCombo.setComponentOrientation(ComponentOrientation.RIGHT_TO_LEFT);
         }
@@ -93,7 +158,14 @@ public class ReportView extends JPanel {
         generateButton.addActionListener(this::generateReport);
         topPanel.add(generateButton);
         
-        add(topPanel, BorderLayout.NORTH);
+        JPanel northPanel = new JPanel();
+        northPanel.setLayout(new BoxLayout(northPanel, BoxLayout.Y_AXIS));
+        northPanel.add(topPanel);
+        northPanel.add(createFilterPanel());
+        add(northPanel, BorderLayout.NORTH);
+        
+        reportTypeCombo.addActionListener(e -> updateFilterControls());
+        updateFilterControls();
         
         // Create reports table in a panel with a title
         JPanel tablePanel = new JPanel(new BorderLayout());
@@ -126,7 +198,10 @@ public class ReportView extends JPanel {
         
         JScrollPane scrollPane = new JScrollPane(reportsTable);
         tablePanel.add(scrollPane, BorderLayout.CENTER);
-        add(tablePanel, BorderLayout.CENTER);
+        
+        JSplitPane splitPane = new JSplitPane(JSplitPane.VERTICAL_SPLIT, tablePanel, createJobsPanel());
+        splitPane.setResizeWeight(0.7);
+        add(splitPane, BorderLayout.CENTER);
         
         // Create bottom panel with view button
         JPanel bottomPanel = new JPanel(new FlowLayout(isRightToLeft ? FlowLayout.LEFT : FlowLayout.RIGHT));
@@ -139,6 +214,280 @@ public class ReportView extends JPanel {
         add(bottomPanel, BorderLayout.SOUTH);
     }
     
+    private JPanel createFilterPanel() {
+        JPanel filterPanel = new JPanel(new FlowLayout(isRightToLeft ? FlowLayout.RIGHT : FlowLayout.LEFT));
+        filterPanel.setBorder(BorderFactory.createEmptyBorder(0, 10, 5, 10));
+        
+        filterPanel.add(new JLabel(messages.getString("reports.filter.dateRange") + ":"));
+        fromDateChooser = new JDateChooser();
+        fromDateChooser.setPreferredSize(new Dimension(130, 25));
+        fromDateChooser.setDateFormatString("yyyy-MM-dd");
+        toDateChooser = new JDateChooser();
+        toDateChooser.setPreferredSize(new Dimension(130, 25));
+        toDateChooser.setDateFormatString("yyyy-MM-dd");
+        filterPanel.add(fromDateChooser);
+        filterPanel.add(new JLabel(messages.getString("common.to")));
+        filterPanel.add(toDateChooser);
+        
+        filterPanel.add(new JLabel(messages.getString("reports.filter.category") + ":"));
+        categoryFilter = new JComboBox<>();
+        filterPanel.add(categoryFilter);
+        
+        filterPanel.add(new JLabel(messages.getString("reports.filter.supplier") + ":"));
+        supplierFilter = new JComboBox<>();
+        filterPanel.add(supplierFilter);
+        
+        filterPanel.add(new JLabel(messages.getString("reports.filter.customer") + ":"));
+        customerFilter = new JComboBox<>();
+        filterPanel.add(customerFilter);
+        
+        filterPanel.add(new JLabel(messages.getString("reports.filter.status") + ":"));
+        statusFilter = new JComboBox<>(new String[] {
+            messages.getString("reports.filter.all"),
+            messages.getString("orders.status.new"),
+            messages.getString("orders.status.processing"),
+            messages.getString("orders.status.shipped"),
+            messages.getString("orders.status.delivered"),
+            messages.getString("orders.status.cancelled")
+        });
+        filterPanel.add(statusFilter);
+        
+        filterPanel.add(new JLabel(messages.getString("reports.filter.topN") + ":"));
+        topNSpinner = new JSpinner(new SpinnerNumberModel(ReportParameters.DEFAULT_TOP_N, 1, 1000, 1));
+        filterPanel.add(topNSpinner);
+        
+        if (isRightToLeft) {
+            categoryFilter.setComponentOrientation(ComponentOrientation.RIGHT_TO_LEFT);
+            supplierFilter.setComponentOrientation(ComponentOrientation.RIGHT_TO_LEFT);
+            customerFilter.setComponentOrientation(ComponentOrientation.RIGHT_TO_LEFT);
+            statusFilter.setComponentOrientation(ComponentOrientation.RIGHT_TO_LEFT);
+        }
+        
+        loadFilterOptions();
+        return filterPanel;
+    }
+    
+    private void loadFilterOptions() {
+        String all = messages.getString("reports.filter.all");
+        
+        categoryFilter.removeAllItems();
+        categoryFilter.addItem(new Category(0, all, ""));
+        for (Category category : new CategoryController().getAllCategories()) {
+            categoryFilter.addItem(category);
+        }
+        
+        supplierFilter.removeAllItems();
+        supplierFilter.addItem(new Supplier(0, all, "", ""));
+        for (Supplier supplier : new SupplierController().getAllSuppliers()) {
+            supplierFilter.addItem(supplier);
+        }
+        
+        customerFilter.removeAllItems();
+        customerFilter.addItem(new Customer(0, all, "", "", ""));
+        for (Customer customer : new CustomerController().getAllCustomers()) {
+            customerFilter.addItem(customer);
+        }
+    }
+    
+    /**
+     * Enable only the filters the selected report type uses
+     */
+    private void updateFilterControls() {
+        String reportType = getReportTypeValue(reportTypeCombo.getSelectedIndex());
+        boolean orders = "Sales".equals(reportType) || "TopProducts".equals(reportType);
+        
+        fromDateChooser.setEnabled(orders);
+        toDateChooser.setEnabled(orders);
+        customerFilter.setEnabled(orders);
+        statusFilter.setEnabled(orders);
+        topNSpinner.setEnabled("TopProducts".equals(reportType));
+    }
+    
+    /**
+     * The filters chosen for the selected report type
+     * @return The filters, or null after telling the user the date range is invalid
+     */
+    private ReportParameters getReportParameters(String reportType) {
+        ReportParameters parameters = new ReportParameters();
+        
+        Category category = (Category) categoryFilter.getSelectedItem();
+        if (category != null && category.getId() > 0) {
+            parameters.setCategoryId(category.getId());
+        }
+        Supplier supplier = (Supplier) supplierFilter.getSelectedItem();
+        if (supplier != null && supplier.getId() > 0) {
+            parameters.setSupplierId(supplier.getId());
+        }
+        
+        if ("Sales".equals(reportType) || "TopProducts".equals(reportType)) {
+            parameters.setFromDate(toLocalDate(fromDateChooser.getDate()));
+            parameters.setToDate(toLocalDate(toDateChooser.getDate()));
+            if (parameters.getFromDate() != null && parameters.getToDate() != null
+                    && parameters.getFromDate().isAfter(parameters.getToDate())) {
+                JOptionPane.showMessageDialog(this,
+                    messages.getString("reports.error.dateRange"),
+                    messages.getString("dialog.inputError"),
+                    JOptionPane.ERROR_MESSAGE);
+                return null;
+            }
+            
+            Customer customer = (Customer) customerFilter.getSelectedItem();
+            if (customer != null && customer.getId() > 0) {
+                parameters.setCustomerId(customer.getId());
+            }
+            parameters.setStatus(ORDER_STATUSES[Math.max(0, statusFilter.getSelectedIndex())]);
+        }
+        
+        if ("TopProducts".equals(reportType)) {
+            parameters.setTopN((Integer) topNSpinner.getValue());
+        }
+        return parameters;
+    }
+    
+    private static LocalDate toLocalDate(Date date) {
+        return date != null ? date.toInstant().atZone(ZoneId.systemDefault()).toLocalDate() : null;
+    }
+    
+    private JPanel createJobsPanel() {
+        JPanel jobsPanel = new JPanel(new BorderLayout());
+        jobsPanel.setBorder(BorderFactory.createTitledBorder(messages.getString("reports.jobs.title")));
+        
+        String[] columns = {
+            messages.getString("column.id"),
+            messages.getString("reports.column.type"),
+            messages.getString("reports.column.format"),
+            messages.getString("reports.jobs.column.status"),
+            messages.getString("reports.jobs.column.progress")
+        };
+        
+        jobsModel = new DefaultTableModel(columns, 0) {
+            @Override
+            public boolean isCellEditable(int row, int column) {
+                return false;
+            }
+        };
+        
+        jobsTable = new JTable(jobsModel);
+        jobsTable.getColumnModel().getColumn(JOB_PROGRESS_COLUMN).setCellRenderer(new ProgressRenderer());
+        
+        if (isRightToLeft) {
+            jobsTable.setComponentOrientation(ComponentOrientation.RIGHT_TO_LEFT);
+            jobsTable.getTableHeader().setComponentOrientation(ComponentOrientation.RIGHT_TO_LEFT);
+        }
+        
+        jobsPanel.add(new JScrollPane(jobsTable), BorderLayout.CENTER);
+        
+        JPanel buttonPanel = new JPanel(new FlowLayout(isRightToLeft ? FlowLayout.LEFT : FlowLayout.RIGHT));
+        cancelJobButton = new JButton(messages.getString("reports.jobs.button.cancel"));
+        cancelJobButton.addActionListener(this::cancelSelectedJob);
+        buttonPanel.add(cancelJobButton);
+        jobsPanel.add(buttonPanel, BorderLayout.SOUTH);
+        
+        progressTimer = new Timer(500, e -> updateJobProgress());
+        
+        return jobsPanel;
+    }
+    
+    private void loadJobs() {
+        jobsModel.setRowCount(0);
+        for (ReportJob job : reportController.getRecentJobs(RECENT_JOBS)) {
+            jobsModel.addRow(createJobRow(job));
+        }
+        updateJobProgress();
+    }
+    
+    private Object[] createJobRow(ReportJob job) {
+        Object[] row = new Object[5];
+        row[0] = job.getId();
+        row[1] = getLocalizedReportType(job.getReportType());
+        row[2] = job.getFormat();
+        row[JOB_STATUS_COLUMN] = getLocalizedJobStatus(job.getStatus());
+        row[JOB_PROGRESS_COLUMN] = new JobProgress(job);
+        return row;
+    }
+    
+    private String getLocalizedJobStatus(String status) {
+        try {
+            return messages.getString("reports.jobs.status." + status);
+        } catch (Exception e) {
+            return status;
+        }
+    }
+    
+    /**
+     * Show a job's new state; a finished report joins the report list
+     */
+    private void jobChanged(ReportJob job) {
+        int row = findJobRow(job.getId());
+        if (row < 0) {
+            jobsModel.insertRow(0, createJobRow(job));
+            if (jobsModel.getRowCount() > RECENT_JOBS) {
+                jobsModel.setRowCount(RECENT_JOBS);
+            }
+        } else {
+            Object[] values = createJobRow(job);
+            for (int column = 1; column < values.length; column++) {
+                jobsModel.setValueAt(values[column], row, column);
+            }
+        }
+        
+        if (ReportJob.DONE.equals(job.getStatus())) {
+            loadReports();
+        } else if (ReportJob.FAILED.equals(job.getStatus())) {
+            JOptionPane.showMessageDialog(this,
+                messages.getString("reports.error.generate") + " (#" + job.getId() + ")",
+                messages.getString("dialog.error"),
+                JOptionPane.ERROR_MESSAGE);
+        }
+        updateJobProgress();
+    }
+    
+    private int findJobRow(int jobId) {
+        for (int row = 0; row < jobsModel.getRowCount(); row++) {
+            if ((int) jobsModel.getValueAt(row, 0) == jobId) {
+                return row;
+            }
+        }
+        return -1;
+    }
+    
+    /**
+     * Copy the live row counts of active jobs into the table, and keep the timer
+     * running only while some job is active
+     */
+    private void updateJobProgress() {
+        boolean active = false;
+        for (int row = 0; row < jobsModel.getRowCount(); row++) {
+            JobProgress progress = (JobProgress) jobsModel.getValueAt(row, JOB_PROGRESS_COLUMN);
+            if (!progress.active) {
+                continue;
+            }
+            JobControl control = reportController.getJobControl((int) jobsModel.getValueAt(row, 0));
+            if (control != null) {
+                active = true;
+                progress.rowsDone = control.getRowsDone();
+                progress.rowsTotal = control.getRowsTotal();
+                jobsModel.fireTableCellUpdated(row, JOB_PROGRESS_COLUMN);
+            }
+        }
+        
+        if (active && !progressTimer.isRunning()) {
+            progressTimer.start();
+        } else if (!active && progressTimer.isRunning()) {
+            progressTimer.stop();
+        }
+    }
+    
+    private void cancelSelectedJob(ActionEvent e) {
+        int selectedRow = jobsTable.getSelectedRow();
+        if (selectedRow < 0 || !reportController.cancelJob((int) jobsModel.getValueAt(selectedRow, 0))) {
+            JOptionPane.showMessageDialog(this,
+                messages.getString("reports.jobs.error.selectToCancel"),
+                messages.getString("dialog.noSelection"),
+                JOptionPane.WARNING_MESSAGE);
+        }
+    }
+    
     private void loadReports() {
         tableModel.setRowCount(0);
         List<Report> reports = reportController.getAllReports();
@@ -156,7 +505,9 @@ public class ReportView extends JPanel {
         
         // Get format from file extension
         String filePath = report.getFilePath();
-        String format = filePath.substring(filePath.lastIndexOf('.') + 1).toUpperCase();
+        String format = filePath.toLowerCase().endsWith(".csv.gz")
+                ? "CSV.GZ"
+                : filePath.substring(filePath.lastIndexOf('.') + 1).toUpperCase();
         row[3] = format;
         
         row[4] = messages.getString("button.view"); // Placeholder for button
@@ -178,21 +529,15 @@ public class ReportView extends JPanel {
         String reportType = getReportTypeValue(reportTypeCombo.getSelectedIndex());
         String format = formatCombo.getSelectedItem().toString();
         
-        // Simple parameters for now
-        String parameters = "{}";
+        ReportParameters parameters = getReportParameters(reportType);
+        if (parameters == null) {
+            return;
+        }
         
-        // Generate the report
-        Report report = reportController.generateReport(reportType, format, parameters);
+        // Queue the report; the jobs table follows it until it is done
+        ReportJob job = reportController.submitReport(reportType, format, parameters.toJson());
         
-        if (report != null) {
-            JOptionPane.showMessageDialog(this,
-                messages.getString("reports.success.generated") + ":\n" + report.getFilePath(),
-                messages.getString("dialog.success"),
-                JOptionPane.INFORMATION_MESSAGE);
-            
-            // Reload reports to include the new one
-            loadReports();
-        } else {
+        if (job == null) {
             JOptionPane.showMessageDialog(this,
                 messages.getString("reports.error.generate"),
                 messages.getString("dialog.error"),
@@ -250,7 +595,45 @@ public class ReportView extends JPanel {
     }
 
     public void refreshData() {
+        loadFilterOptions();
         loadReports();
+        loadJobs();
+    }
+    
+    /**
+     * Row counts of a job as shown in the progress column
+     */
+    private static class JobProgress {
+        final boolean active;
+        long rowsDone;
+        long rowsTotal;
+        
+        JobProgress(ReportJob job) {
+            active = job.isActive();
+            rowsDone = job.getRowsDone();
+            rowsTotal = job.getRowsTotal();
+        }
+    }
+    
+    // Custom renderer for job progress
+    private class ProgressRenderer extends JProgressBar implements javax.swing.table.TableCellRenderer {
+        public ProgressRenderer() {
+            super(0, 100);
+            setStringPainted(true);
+        }
+        
+        @Override
+        public Component getTableCellRendererComponent(JTable table, Object value, boolean isSelected, boolean hasFocus, int row, int column) {
+            JobProgress progress = (JobProgress) value;
+            if (progress.rowsTotal > 0) {
+                setValue((int) Math.min(100, progress.rowsDone * 100 / progress.rowsTotal));
+                setString(progress.rowsDone + " / " + progress.rowsTotal);
+            } else {
+                setValue(0);
+                setString(progress.active || progress.rowsDone > 0 ? String.valueOf(progress.rowsDone) : "");
+            }
+            return this;
+        }
     }
 
     // Custom renderer for view button